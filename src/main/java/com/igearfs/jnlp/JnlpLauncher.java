@@ -9,27 +9,62 @@
 
 package com.igearfs.jnlp;
 
+import com.igearfs.jnlp.cache.CacheEvictor;
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheScrubber;
+import com.igearfs.jnlp.download.DownloadEngine;
+import com.igearfs.jnlp.download.JarDownloader;
+import com.igearfs.jnlp.launch.ArgFile;
+import com.igearfs.jnlp.launch.CdsArchive;
+import com.igearfs.jnlp.launch.ChildProcess;
+import com.igearfs.jnlp.launch.ClasspathCache;
+import com.igearfs.jnlp.launch.DescriptorCache;
+import com.igearfs.jnlp.launch.InProcessApp;
+import com.igearfs.jnlp.launch.JarRepacker;
+import com.igearfs.jnlp.launch.JvmOptions;
+import com.igearfs.jnlp.launch.JvmPool;
+import com.igearfs.jnlp.launch.LaunchPlan;
+import com.igearfs.jnlp.launch.LazyPartClassLoader;
+import com.igearfs.jnlp.launch.LazyParts;
+import com.igearfs.jnlp.launch.LibrarySets;
+import com.igearfs.jnlp.launch.NativeLibraryCache;
+import com.igearfs.jnlp.launch.ProcessSupervisor;
+import com.igearfs.jnlp.launch.ResourceResolver;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.model.JnlpDescriptor;
+import com.igearfs.jnlp.model.JvmProfile;
 import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.model.LaunchMode;
+import com.igearfs.jnlp.net.LauncherHttpClient;
+import com.igearfs.jnlp.security.JarVerifier;
 import com.igearfs.jnlp.security.TrustStoreManager;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.file.Files;
+import java.net.http.HttpClient;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class JnlpLauncher {
 
-    private static final String CACHE_DIR = "jnlp_cache";  // Cache directory
     private static final String JRE_PATH = System.getProperty("java.home") + "/bin/java"; // Dynamically set JRE path
+    private static final DownloadEngine DOWNLOAD_ENGINE = new DownloadEngine(); // Shared so host limits adapt across launches
+
+    // Launch plans are revalidated one at a time, off the launch path
+    private static final ExecutorService REVALIDATION = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plan-revalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<String> REVALIDATING = ConcurrentHashMap.newKeySet();
+    private static volatile long lastLaunchAt; // Background prefetching waits while someone is launching
 
     public static void main(String[] args) {
         if (args.length != 1) {
@@ -48,6 +83,12 @@ public class JnlpLauncher {
             // Now SSL verification will trust the JNLP URL server's certificate
             loadJnlpAndLaunch(entry);
 
+            // The application may still be waiting for lazy parts, keep downloading them
+            finishBackgroundWork();
+
+            // Keep copying the application's output to this console until it exits
+            ProcessSupervisor.awaitExit();
+
         } catch (Exception e) {
             System.err.println("Error during JNLP launch process: " + e.getMessage());
             e.printStackTrace();
@@ -56,172 +97,315 @@ public class JnlpLauncher {
     }
 
     public static void loadJnlpAndLaunch(LaunchEntry entry) throws Exception {
-        try {
-            // Trust the server certificate by using the default JRE truststore
-            TrustStoreManager.trustUrl(entry);  // Automatically uses the default truststore from JRE
-
-        } catch (Exception e) {
-            System.err.println("Error during JNLP launch process: " + e.getMessage());
-            e.printStackTrace();
+        LaunchPlan plan = LaunchPlan.load(entry);
+        if (plan != null && !passesVerification(plan)) {
+            plan = null; // Made before JARs had to be trusted, resolving verifies them
         }
-        String jnlpUrl = entry.getUrl();
-        Document jnlpDoc = loadJnlp(jnlpUrl);
-        String mainClass = extractMainClass(jnlpDoc);
-        List<String> jarUrls = extractJarUrls(jnlpUrl, jnlpDoc);
-        List<String> appArgs = extractAppArgs(jnlpDoc);
-
-        if (mainClass == null || mainClass.isEmpty()) {
-            throw new RuntimeException("Main class not found in JNLP");
+        if (plan != null && plan.isFresh() && isIntact(plan)) {
+            // Warm launch: nothing goes over the network before the application starts
+            System.out.println("Launching " + entry.getName() + " from its launch plan (validated " + plan.describeAge() + " ago)");
+            launchPlan(entry, plan);
+            revalidateInBackground(entry);
+            return;
         }
 
-        List<Path> downloadedJars = new ArrayList<>();
-        for (String jarUrl : jarUrls) {
-            Path jarPath = downloadJar(jarUrl, jnlpUrl); // Pass jnlpUrl for domain-based cache
-            downloadedJars.add(jarPath);
+        try {
+            resolveAndLaunch(entry);
+        } catch (IOException e) {
+            if (plan == null || !isIntact(plan)) {
+                throw e;
+            }
+            System.err.println("Could not resolve " + entry.getUrl() + " (" + e.getMessage() + "), launching the plan validated "
+                    + plan.describeAge() + " ago");
+            launchPlan(entry, plan);
         }
-
-        String classpath = buildClasspath(downloadedJars);
-        launchApp(mainClass, classpath, appArgs);
     }
 
-    private static Document loadJnlp(String jnlpUrl) throws Exception {
-        System.out.println("Loading JNLP from: " + jnlpUrl);
-        URL url = new URL(jnlpUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-
-        try (InputStream inputStream = connection.getInputStream()) {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.parse(inputStream);
+    /**
+     * Starts an application from its launch plan without contacting the server at all.
+     */
+    public static void launchOffline(LaunchEntry entry) throws Exception {
+        LaunchPlan plan = LaunchPlan.load(entry);
+        if (plan == null) {
+            throw new IOException("No launch plan cached for " + entry.getName() + ", launch it once while the server is reachable");
+        }
+        if (!passesVerification(plan)) {
+            throw new IOException("The launch plan of " + entry.getName() + " was made with unverified JARs, "
+                    + "launch it once while the server is reachable");
         }
+        if (!isIntact(plan)) {
+            throw new IOException("Cached JARs of " + entry.getName() + " are damaged, launch it once while the server is reachable");
+        }
+        System.out.println("Launching " + entry.getName() + " offline (plan validated " + plan.describeAge() + " ago)");
+        launchPlan(entry, plan);
     }
 
-    private static String extractMainClass(Document jnlpDoc) {
-        NodeList mainClassNodes = jnlpDoc.getElementsByTagName("application-desc");
-        if (mainClassNodes.getLength() > 0) {
-            Element mainClassElement = (Element) mainClassNodes.item(0);
-            return mainClassElement.getAttribute("main-class");
-        }
-        return null;
+    // Plans only record the outcome of the verification, so warm launches never check signatures again
+    private static boolean passesVerification(LaunchPlan plan) {
+        return JarVerifier.MODE != JarVerifier.Mode.ENFORCE || plan.isTrusted();
     }
 
-    private static List<String> extractJarUrls(String jnlpUrl, Document jnlpDoc) {
-        List<String> jarUrls = new ArrayList<>();
-        NodeList jarNodes = jnlpDoc.getElementsByTagName("jar");
-        for (int i = 0; i < jarNodes.getLength(); i++) {
-            Element jarElement = (Element) jarNodes.item(i);
-            String jarUrl = jarElement.getAttribute("href");
-            if (!jarUrl.startsWith("http")) {
-                jarUrl = jnlpUrl.substring(0, jnlpUrl.lastIndexOf("/") + 1) + jarUrl;
+    // Damaged JARs are discarded, the next resolve downloads them again
+    private static boolean isIntact(LaunchPlan plan) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        for (String path : plan.getClasspath()) {
+            if (path.endsWith(".jar")) {
+                jars.add(Paths.get(path));
             }
-            jarUrls.add(jarUrl);
         }
-        return jarUrls;
+        List<Path> damaged = CacheScrubber.damaged(jars);
+        if (damaged.isEmpty()) {
+            return true;
+        }
+        System.err.println(damaged.size() + " cached JARs of the launch plan are damaged, resolving again");
+        CacheScrubber.discard(damaged);
+        return false;
     }
 
-    private static List<String> extractAppArgs(Document jnlpDoc) {
-        List<String> appArgs = new ArrayList<>();
-        NodeList argNodes = jnlpDoc.getElementsByTagName("argument");
-        for (int i = 0; i < argNodes.getLength(); i++) {
-            appArgs.add(argNodes.item(i).getTextContent());
-        }
-        return appArgs;
+    private static void launchPlan(LaunchEntry entry, LaunchPlan plan) throws IOException {
+        launchApp(entry, plan.getMainClass(), plan.classpathString(), plan.getNativeDirs(), plan.getArguments(), null,
+                plan.getJvmProfile().overriddenBy(entry.getJvmProfile()));
+    }
+
+    /**
+     * Lets background work (lazy parts, plan revalidation) finish, for callers that exit right after launching.
+     */
+    public static void finishBackgroundWork() throws InterruptedException {
+        REVALIDATION.shutdown();
+        REVALIDATION.awaitTermination(1, TimeUnit.HOURS);
+        LazyParts.finishBackgroundDownloads();
+        CacheEvictor.flush();
     }
 
-    private static Path downloadJar(String jarUrl, String jnlpUrl) throws IOException {
-        // Generate a cache folder based on the domain
-        String domain = getDomainFromUrl(jnlpUrl);
-        Path domainCacheDir = Paths.get(CACHE_DIR, domain);
-        if (!Files.exists(domainCacheDir)) {
-            Files.createDirectories(domainCacheDir);
+    private static void resolveAndLaunch(LaunchEntry entry) throws Exception {
+        String jnlpUrl = entry.getUrl();
+        HttpClient client = connect(entry);
+        JnlpDescriptor descriptor = loadDescriptor(client, jnlpUrl);
+
+        // One merged resource list for the descriptor and all of its extensions
+        ResourceResolver.Resources resources = ResourceResolver.resolve(client, descriptor);
+
+        // Only the eager JARs are needed to start, lazy parts follow once the application runs
+        LazyParts parts = LazyParts.split(resources.getJars(), resources.getPackages());
+        JarDownloader downloader = new JarDownloader(client, jnlpUrl);
+
+        // Fetch the eager and native JARs in parallel, domain-based cache keyed by the jnlpUrl
+        List<JarResource> startupJars = parts.getStartupJars();
+        List<Path> startupPaths;
+        try {
+            startupPaths = downloadIntact(startupJars, downloader);
+        } finally {
+            CacheIndex.get().save(); // Persist validators even for the JARs that made it before a failure
         }
 
-        // Create the full file path for the JAR in the cache
-        Path jarPath = domainCacheDir.resolve(getFileNameFromUrl(jarUrl));
+        // Throws in enforce mode, before anything was started or saved
+        boolean trusted = JarVerifier.verify(startupJars, startupPaths);
+
+        int eagerCount = parts.getEagerJars().size();
+        List<Path> downloadedJars = startupPaths.subList(0, eagerCount);
+        List<Path> nativeDirs = NativeLibraryCache.extract(parts.getNativeJars(),
+                startupPaths.subList(eagerCount, startupPaths.size()));
+
+        Path libraryDir = LibrarySets.resolve(entry.getId(), descriptor.getServerVersion());
+        String classpath = buildClasspath(JarRepacker.forLaunch(parts.getEagerJars(), downloadedJars), libraryDir);
+        Path lazyManifest = null;
+        if (parts.hasLazyParts()) {
+            lazyManifest = parts.writeManifest(classpath);
+            // The plan needs every JAR on disk, so it is saved once the lazy parts are in
+            parts.downloadInBackground(DOWNLOAD_ENGINE, downloader::downloadJar, lazyManifest,
+                    (lazyJars, lazyTrusted) -> {
+                        CacheEvictor.touch(lazyJars);
+                        savePlan(entry, descriptor, classpath, JarRepacker.forLaunch(parts.getLazyJars(), lazyJars),
+                                nativeDirs, trusted && lazyTrusted);
+                    });
+        } else {
+            savePlan(entry, descriptor, classpath, List.of(), nativeDirs, trusted);
+        }
+        launchApp(entry, descriptor.getMainClass(), classpath, nativeDirs, descriptor.getArguments(), lazyManifest,
+                descriptor.getJvmProfile().overriddenBy(entry.getJvmProfile()));
+    }
 
-        // If the JAR file already exists in the cache, skip the download
-        if (Files.exists(jarPath)) {
-            System.out.println("JAR already exists in cache: " + jarPath.toString());
-            return jarPath;
+    private static void revalidateInBackground(LaunchEntry entry) {
+        if (!REVALIDATING.add(entry.getId())) {
+            return;
         }
+        REVALIDATION.submit(() -> {
+            try {
+                revalidate(entry);
+            } catch (Exception e) {
+                System.err.println("Background revalidation of " + entry.getUrl() + " failed: " + e.getMessage());
+            } finally {
+                REVALIDATING.remove(entry.getId());
+            }
+        });
+    }
 
-        // Download the JAR file if it doesn't exist
-        System.out.println("Downloading JAR from: " + jarUrl);
-        URL url = new URL(jarUrl);
+    /**
+     * Revalidates the launch plan of {@code entry} on the calling thread, for the prefetch scheduler.
+     * Returns false without doing anything when the entry is already being revalidated.
+     */
+    static boolean prefetch(LaunchEntry entry) throws Exception {
+        if (!REVALIDATING.add(entry.getId())) {
+            return false;
+        }
+        try {
+            revalidate(entry);
+            return true;
+        } finally {
+            REVALIDATING.remove(entry.getId());
+        }
+    }
 
-        // Open a connection to the URL
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestProperty("User-Agent", "Java JNLP Launcher");
-        conn.connect();
+    // When an application was last started, 0 before the first launch
+    static long lastLaunchAt() {
+        return lastLaunchAt;
+    }
 
-        // Download the file to the cache directory
-        try (InputStream in = conn.getInputStream();
-             OutputStream out = Files.newOutputStream(jarPath)) {
-            byte[] buffer = new byte[4096];
-            int len;
-            while ((len = in.read(buffer)) != -1) {
-                out.write(buffer, 0, len);
-            }
+    /**
+     * Runs the whole pipeline, lazy parts included, and only refreshes the plan for the next launch.
+     * Nobody watches it, so it never trusts a certificate: that is left to a launch the user started.
+     */
+    private static void revalidate(LaunchEntry entry) throws Exception {
+        String jnlpUrl = entry.getUrl();
+        HttpClient client = LauncherHttpClient.client(entry);
+        JnlpDescriptor descriptor = loadDescriptor(client, jnlpUrl);
+        ResourceResolver.Resources resources = ResourceResolver.resolve(client, descriptor);
+        LazyParts parts = LazyParts.split(resources.getJars(), resources.getPackages());
+        JarDownloader downloader = new JarDownloader(client, jnlpUrl);
+
+        List<Path> eagerJars;
+        List<Path> lazyJars;
+        List<Path> nativeJars;
+        try {
+            eagerJars = downloadIntact(parts.getEagerJars(), downloader);
+            lazyJars = downloadIntact(parts.getLazyJars(), downloader);
+            nativeJars = downloadIntact(parts.getNativeJars(), downloader);
+        } finally {
+            CacheIndex.get().save();
         }
+        boolean trusted = JarVerifier.verify(parts.getEagerJars(), eagerJars) & JarVerifier.verify(parts.getLazyJars(), lazyJars)
+                & JarVerifier.verify(parts.getNativeJars(), nativeJars);
+        Path libraryDir = LibrarySets.resolve(entry.getId(), descriptor.getServerVersion());
+        savePlan(entry, descriptor, buildClasspath(JarRepacker.forLaunch(parts.getEagerJars(), eagerJars), libraryDir),
+                JarRepacker.forLaunch(parts.getLazyJars(), lazyJars), NativeLibraryCache.extract(parts.getNativeJars(), nativeJars),
+                trusted);
+        System.out.println("Launch plan of " + entry.getName() + " revalidated");
+    }
 
-        System.out.println("Downloaded JAR to: " + jarPath.toString());
-        return jarPath;
+    // Cached JARs that turn out damaged are discarded and downloaded once more
+    private static List<Path> downloadIntact(List<JarResource> jars, JarDownloader downloader) throws IOException {
+        List<Path> paths = DOWNLOAD_ENGINE.downloadAll(jars, downloader::downloadJar);
+        List<Path> damaged = CacheScrubber.damaged(paths);
+        if (damaged.isEmpty()) {
+            return paths;
+        }
+        System.err.println(damaged.size() + " cached JARs are damaged, downloading them again");
+        CacheScrubber.discard(damaged);
+        return DOWNLOAD_ENGINE.downloadAll(jars, downloader::downloadJar);
     }
 
-    private static String getDomainFromUrl(String urlString) {
+    private static HttpClient connect(LaunchEntry entry) {
         try {
-            URL url = new URL(urlString);
-            return url.getHost();  // Extract the domain (host) from the URL
+            // Trust the server certificate by using the default JRE truststore
+            TrustStoreManager.trustUrl(entry);  // Automatically uses the default truststore from JRE
+
         } catch (Exception e) {
-            throw new RuntimeException("Invalid URL: " + urlString, e);
+            System.err.println("Error during JNLP launch process: " + e.getMessage());
+            e.printStackTrace();
         }
+        return LauncherHttpClient.client(entry); // Shared, so the JNLP and JAR fetches reuse connections
     }
 
-    private static String getFileNameFromUrl(String jarUrl) {
-        // Extract the file name from the URL (e.g., "file.jar" from "http://example.com/file.jar")
-        return jarUrl.substring(jarUrl.lastIndexOf('/') + 1);
+    private static JnlpDescriptor loadDescriptor(HttpClient client, String jnlpUrl) throws IOException {
+        System.out.println("Loading JNLP from: " + jnlpUrl);
+        JnlpDescriptor descriptor = DescriptorCache.load(client, jnlpUrl);
+        if (descriptor.getMainClass() == null || descriptor.getMainClass().isEmpty()) {
+            throw new RuntimeException("Main class not found in JNLP");
+        }
+        return descriptor;
     }
 
-    private static String buildClasspath(List<Path> downloadedJars) {
-        StringBuilder classpath = new StringBuilder();
-
-        // Include the path to the JavaFX SDK lib directory
-        String javafxLibPath = "javafx-sdk-17.0.14/lib";  // Path to your javafx-sdk lib folder
-        classpath.append(javafxLibPath).append(File.pathSeparator);
+    private static void savePlan(LaunchEntry entry, JnlpDescriptor descriptor, String classpath, List<Path> lazyJars,
+                                 List<Path> nativeDirs, boolean trusted) {
+        List<String> entries = new ArrayList<>();
+        for (String path : classpath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                entries.add(path);
+            }
+        }
+        for (Path jar : lazyJars) {
+            entries.add(jar.toString());
+        }
+        new LaunchPlan(entry.getId(), entry.getUrl(), descriptor.getSha256(), descriptor.getMainClass(),
+                descriptor.getArguments(), descriptor.getJvmProfile(), entries, nativeDirs, trusted,
+                InProcessApp.isJavaFxApplication(entries, descriptor.getMainClass()), System.currentTimeMillis()).save();
+    }
 
-        // Add all downloaded JARs to the classpath
+    private static String buildClasspath(List<Path> downloadedJars, Path libraryDir) {
+        // Descriptor order first, then the library JARs sorted by path; a JAR listed twice keeps its first position
+        Set<Path> seen = new HashSet<>();
+        List<String> classpath = new ArrayList<>();
         for (Path jar : downloadedJars) {
-            if (classpath.length() > 0) {
-                classpath.append(File.pathSeparator); // Add separator between paths
+            if (seen.add(jar.toAbsolutePath().normalize())) {
+                classpath.add(jar.toString());
             }
-            classpath.append(jar.toString());
         }
 
-        // Add the JARs in the subfolders of the 4.5.2 directory
-        File libFolder = new File("4.5.2");  // Directory with the 4.5.2 JARs
-        addJarFilesFromFolder(libFolder, classpath);
+        // The JARs in the subfolders of the library set of the server's version, remembered between launches
+        for (String jar : ClasspathCache.jarsUnder(libraryDir)) {
+            if (seen.add(Paths.get(jar))) {
+                classpath.add(jar);
+            }
+        }
 
-        return classpath.toString();
+        return String.join(File.pathSeparator, classpath);
     }
 
-    private static void addJarFilesFromFolder(File folder, StringBuilder classpath) {
-        if (folder.exists() && folder.isDirectory()) {
-            // List all files in the directory and its subdirectories
-            File[] files = folder.listFiles();
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    // Recurse into subdirectories
-                    addJarFilesFromFolder(file, classpath);
-                } else if (file.getName().endsWith(".jar")) {
-                    // Add the JAR file to the classpath
-                    classpath.append(File.pathSeparator).append(file.getAbsolutePath());
-                }
+    // Nothing the application runs from is evicted from the cache while it runs
+    private static ChildProcess launchApp(LaunchEntry entry, String mainClass, String classpath, List<Path> nativeDirs,
+                                          List<String> appArgs, Path lazyManifest, JvmProfile jvmProfile) throws IOException {
+        lastLaunchAt = System.currentTimeMillis();
+        List<Path> used = new ArrayList<>(nativeDirs);
+        for (String path : classpath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                used.add(Paths.get(path));
             }
         }
+        CacheEvictor.Lease lease = CacheEvictor.lease(used);
+        try {
+            ChildProcess child = startApp(entry, mainClass, classpath, nativeDirs, appArgs, lazyManifest, jvmProfile);
+            lease.until(child.isInProcess() ? 0 : child.getPid(), child::isAlive);
+            LibrarySets.holdUntil(used, child.onExit());
+            return child;
+        } catch (IOException | RuntimeException e) {
+            lease.release();
+            throw e;
+        }
     }
 
-    private static void launchApp(String mainClass, String classpath, List<String> appArgs) throws IOException {
+    private static ChildProcess startApp(LaunchEntry entry, String mainClass, String classpath, List<Path> nativeDirs,
+                                         List<String> appArgs, Path lazyManifest, JvmProfile jvmProfile) throws IOException {
+        if (entry.getLaunchMode() == LaunchMode.IN_PROCESS) {
+            // Lazy parts are fetched while the application runs, which needs the loader of a separate JVM
+            if (lazyManifest == null) {
+                List<String> entries = new ArrayList<>();
+                for (String path : classpath.split(File.pathSeparator)) {
+                    if (!path.isEmpty()) {
+                        entries.add(path);
+                    }
+                }
+                ChildProcess child = InProcessApp.start(entry, entries, nativeDirs, mainClass, appArgs);
+                if (child != null) {
+                    if (!jvmProfile.isEmpty()) {
+                        System.out.println("JVM settings of " + entry.getName() + " do not apply inside the launcher JVM");
+                    }
+                    return child;
+                }
+            } else {
+                System.out.println(entry.getName() + " has lazy parts, launching it in a separate JVM");
+            }
+        }
+
         String javafxPath = "javafx-sdk-17.0.14/lib";  // Ensure absolute path
 
         // Get the default JRE path from java.home
@@ -231,12 +415,12 @@ public class JnlpLauncher {
         // Check OS and set the correct classpath separator
         String classpathSeparator = System.getProperty("os.name").toLowerCase().contains("win") ? ";" : ":";
 
-        List<String> command = new ArrayList<>();
-        command.add(jrePath);
-        command.add("--module-path");
-        command.add(javafxPath);
-        command.add("--add-modules");
-        command.add("javafx.controls,javafx.fxml,javafx.base,javafx.graphics,javafx.web,javafx.media");
+        // Everything up to the main class goes into an argument file, a long classpath would not fit the command line
+        List<String> options = new ArrayList<>();
+        options.add("--module-path");
+        options.add(javafxPath);
+        options.add("--add-modules");
+        options.add("javafx.controls,javafx.fxml,javafx.base,javafx.graphics,javafx.web,javafx.media");
 
         // --add-opens (necessary to avoid IllegalAccessError)
         String[] opens = {
@@ -255,56 +439,104 @@ public class JnlpLauncher {
         };
 
         for (String open : opens) {
-            command.add("--add-opens");
-            command.add(open + "=ALL-UNNAMED");
+            options.add("--add-opens");
+            options.add(open + "=ALL-UNNAMED");
         }
 
-        // Optional: Enable software rendering for JavaFX in case of hardware issues
-        command.add("-Dprism.order=sw");
-
-        // Specify JavaFX native libraries path
-        command.add("-Djava.library.path=" + javafxPath);
+        // Heap, GC, rendering (software unless the entry asks for hardware) and allowed extra flags
+        options.addAll(JvmOptions.forProfile(jvmProfile));
 
-        // Classpath for normal JARs and JavaFX JARs
-        command.add("-cp");
-        command.add(classpath + classpathSeparator + javafxPath + "/*");
-
-        // Main class
-        command.add(mainClass);
+        // The application's extracted native libraries, then JavaFX's
+        List<String> libraryPath = new ArrayList<>();
+        for (Path nativeDir : nativeDirs) {
+            libraryPath.add(nativeDir.toString());
+        }
+        libraryPath.add(javafxPath);
+        options.add("-Djava.library.path=" + String.join(classpathSeparator, libraryPath));
 
-        // Add application arguments
-        command.addAll(appArgs);
+        // JARs without a recorded class load order get one from this run, see JarRepacker
+        JarRepacker loadOrder = JarRepacker.recorder(classpath);
 
-        // Print the generated command for debugging
-        System.out.println("Running command: " + String.join(" ", command));
+        // Classpath for normal JARs and JavaFX JARs
+        CdsArchive cds = null;
+        if (lazyManifest == null) {
+            // A warm JVM started with the same options already has JavaFX and the libraries on its classpath
+            if (JvmPool.isEnabled() && loadOrder == null) {
+                // Pooled JVMs are keyed by the shared classpath, so servers of another version get their own
+                List<String> shared = new ArrayList<>();
+                List<String> appClasspath = new ArrayList<>();
+                for (String path : classpath.split(classpathSeparator)) {
+                    if (path.isEmpty()) {
+                        continue;
+                    }
+                    if (LibrarySets.contains(Paths.get(path))) {
+                        shared.add(path);
+                    } else {
+                        appClasspath.add(path);
+                    }
+                }
+                String sharedClasspath = String.join(classpathSeparator, shared) + classpathSeparator + javafxPath + "/*";
+                ChildProcess pooled = JvmPool.launch(entry, new ArrayList<>(options), sharedClasspath, appClasspath,
+                        mainClass, appArgs);
+                if (pooled != null) {
+                    return pooled;
+                }
+            }
 
-        // Execute using ProcessBuilder (safer than Runtime.exec)
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.inheritIO(); // Redirects output to the console
-        Process process = processBuilder.start();
+            String fullClasspath = classpath + classpathSeparator + javafxPath + "/*";
+            options.add("-cp");
+            options.add(fullClasspath);
 
-        // Capture output and errors
-        new Thread(() -> {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    System.out.println(line);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+            // Archived classes are only used for the built-in loaders, so lazy launches go without
+            cds = CdsArchive.forLaunch(fullClasspath, javafxPath);
+            if (cds != null) {
+                options.addAll(cds.jvmOptions());
             }
-        }).start();
+        } else {
+            // The application classes must all be defined by the loader that can add lazy parts later,
+            // so the real classpath goes through the manifest and -cp only holds that loader
+            options.add("-Djava.system.class.loader=" + LazyPartClassLoader.class.getName());
+            options.add("-D" + LazyPartClassLoader.MANIFEST_PROPERTY + "=" + lazyManifest);
+            options.add("-cp");
+            options.add(LazyParts.bootstrapJar() + classpathSeparator + javafxPath + "/*");
+        }
 
-        new Thread(() -> {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    System.err.println(line);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        if (loadOrder != null) {
+            options.addAll(loadOrder.jvmOptions());
+        }
+
+        Process process;
+        try {
+            List<String> command = new ArrayList<>();
+            command.add(jrePath);
+            command.addAll(ArgFile.commandLine(options));
+
+            // Main class
+            command.add(mainClass);
+
+            // Add application arguments
+            command.addAll(appArgs);
+
+            // Print the generated command for debugging
+            System.out.println("Running command: " + String.join(" ", command));
+
+            // Execute using ProcessBuilder (safer than Runtime.exec)
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true); // One stream per child, copied to the console by the supervisor
+            process = processBuilder.start();
+        } catch (IOException | RuntimeException e) {
+            if (cds != null) {
+                cds.abandon(); // The next launch records it instead
             }
-        }).start();
+            throw e;
+        }
+        if (cds != null) {
+            cds.started(process);
+        }
+        if (loadOrder != null) {
+            loadOrder.started(process);
+        }
+        return ProcessSupervisor.register(entry.getId(), entry.getName(), process);
     }
 
 }
@@ -11,7 +11,11 @@ package com.igearfs.jnlp;
 
 import com.igearfs.jnlp.controller.GridPaneController;
 import com.igearfs.jnlp.controller.LaunchEntryController;
+import com.igearfs.jnlp.controller.ProcessMonitorController;
+import com.igearfs.jnlp.launch.LaunchPlan;
+import com.igearfs.jnlp.model.JvmProfile;
 import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.model.LaunchMode;
 import com.igearfs.jnlp.util.ColorGridCell;
 import com.igearfs.jnlp.util.IconLoader;
 import com.igearfs.jnlp.util.LaunchEntryManager;
@@ -40,7 +44,10 @@ import static com.igearfs.jnlp.util.LaunchEntryManager.saveEntriesToFile;
 public class JnlpLauncherApp extends Application {
     private static final Logger log = LoggerFactory.getLogger(JnlpLauncherApp.class);
 
+    public static final String GC_DEFAULT = "From JNLP"; // No garbage collector override
+
     private GridPaneController gridPaneController = new GridPaneController();
+    private ProcessMonitorController processMonitorController = new ProcessMonitorController();
 
     private List<LaunchEntry> entries = new ArrayList<>();
     private ListView<HBox> listViewJnlp;
@@ -48,10 +55,20 @@ public class JnlpLauncherApp extends Application {
     private TextField urlField;
     private TextArea noteField;
     private Button launchButton;
+    private Button launchOfflineButton;
     private Button saveButton;
     private Button deleteButton;
     private CheckBox ignoreDomainCheckBox;
 
+    // JVM settings of the selected entry, empty fields keep what the JNLP declares
+    private TitledPane jvmSettingsPane;
+    private TextField initialHeapField;
+    private TextField maxHeapField;
+    private ComboBox<String> garbageCollectorBox;
+    private ComboBox<String> renderingBox;
+    private TextField vmArgsField;
+    private ComboBox<LaunchMode> launchModeBox;
+
     private boolean isModified;
 
     private TextField searchField;
@@ -78,23 +95,28 @@ public class JnlpLauncherApp extends Application {
         noteField = new TextArea();
 
         launchButton = new Button("Launch");
+        launchOfflineButton = new Button("Launch Offline");
         saveButton = new Button("Save");
         deleteButton = new Button("Delete");
         launchButton.setDisable(true);
+        launchOfflineButton.setDisable(true);
         saveButton.setDisable(true);
 
         HBox buttonContainer = new HBox(10);
         buttonContainer.setAlignment(Pos.CENTER_RIGHT);
-        buttonContainer.getChildren().addAll(saveButton, launchButton, deleteButton);
+        buttonContainer.getChildren().addAll(saveButton, launchButton, launchOfflineButton, deleteButton);
 
         ignoreDomainCheckBox = new CheckBox("Ignore Domain Validation");
         ignoreDomainCheckBox.setSelected(true);
 
+        jvmSettingsPane = createJvmSettingsPane();
+
         rightPane.getChildren().addAll(
                 new Label("Name:"), nameField,
                 new Label("URL:"), urlField,
                 new Label("Notes:"), noteField,
                 ignoreDomainCheckBox,
+                jvmSettingsPane,
                 buttonContainer
         );
 
@@ -115,10 +137,47 @@ public class JnlpLauncherApp extends Application {
 
         // Set button actions
         launchButton.setOnAction(e -> controller.launchSelectedEntry());
+        launchOfflineButton.setOnAction(e -> controller.launchSelectedEntryOffline());
 
         deleteButton.setOnAction(e -> controller.deleteSelectedEntry());
     }
 
+    /**
+     * Where the entry runs, plus heap, garbage collector, rendering and extra JVM flags, collapsed by default.
+     */
+    private TitledPane createJvmSettingsPane() {
+        launchModeBox = new ComboBox<>();
+        showLaunchMode(null);
+
+        initialHeapField = new TextField();
+        initialHeapField.setPromptText("From JNLP, e.g. 256m");
+        maxHeapField = new TextField();
+        maxHeapField.setPromptText("From JNLP, e.g. 2g");
+
+        garbageCollectorBox = new ComboBox<>();
+        garbageCollectorBox.getItems().addAll(GC_DEFAULT, "G1", "Parallel", "Serial", "ZGC");
+        garbageCollectorBox.setValue(GC_DEFAULT);
+
+        renderingBox = new ComboBox<>();
+        renderingBox.getItems().addAll(JvmProfile.RENDERING_SOFTWARE, JvmProfile.RENDERING_HARDWARE);
+        renderingBox.setValue(JvmProfile.RENDERING_SOFTWARE);
+
+        vmArgsField = new TextField();
+        vmArgsField.setPromptText("e.g. -XX:MaxGCPauseMillis=100 -Dsun.java2d.uiScale=2");
+
+        VBox content = new VBox(5,
+                new Label("Run In:"), launchModeBox,
+                new Label("Initial Heap Size:"), initialHeapField,
+                new Label("Max Heap Size:"), maxHeapField,
+                new Label("Garbage Collector:"), garbageCollectorBox,
+                new Label("Rendering:"), renderingBox,
+                new Label("Extra JVM Arguments:"), vmArgsField
+        );
+        TitledPane pane = new TitledPane("JVM Settings", content);
+        pane.setExpanded(false);
+        return pane;
+    }
+
     private VBox createLeftPane() {
         VBox leftPane = new VBox(10);
         leftPane.setPadding(new Insets(10));
@@ -126,6 +185,9 @@ public class JnlpLauncherApp extends Application {
         Button addButton = new Button("Add Entry");
         addButton.setOnAction(e -> showAddEntryPopup());
 
+        Button processesButton = new Button("Running Apps");
+        processesButton.setOnAction(e -> processMonitorController.show());
+
         HBox searchBox = new HBox(5);
         searchField = new TextField();
         searchField.setPromptText("Search...");
@@ -140,7 +202,7 @@ public class JnlpLauncherApp extends Application {
         searchBox.setPrefWidth(Double.MAX_VALUE);
 
         leftPane.getChildren().add(searchBox);
-        leftPane.getChildren().add(addButton);
+        leftPane.getChildren().add(new HBox(10, addButton, processesButton));
 
         listViewJnlp.setOnMouseClicked(e -> updateRightPane());
         leftPane.getChildren().add(listViewJnlp);
@@ -260,6 +322,14 @@ public class JnlpLauncherApp extends Application {
             noteField.setText(selectedEntry.getNote());
             ignoreDomainCheckBox.setSelected(selectedEntry.isIgnoreDomainValidation());
 
+            JvmProfile jvmProfile = selectedEntry.getJvmProfile();
+            initialHeapField.setText(jvmProfile.getInitialHeapSize() == null ? "" : jvmProfile.getInitialHeapSize());
+            maxHeapField.setText(jvmProfile.getMaxHeapSize() == null ? "" : jvmProfile.getMaxHeapSize());
+            garbageCollectorBox.setValue(jvmProfile.getGarbageCollector() == null ? GC_DEFAULT : jvmProfile.getGarbageCollector());
+            renderingBox.setValue(jvmProfile.getRendering() == null ? JvmProfile.RENDERING_SOFTWARE : jvmProfile.getRendering());
+            vmArgsField.setText(jvmProfile.getVmArgs() == null ? "" : jvmProfile.getVmArgs());
+            showLaunchMode(selectedEntry);
+
             // Button to select a new icon
             Button selectIconButton = new Button("Select Icon");
 
@@ -281,11 +351,13 @@ public class JnlpLauncherApp extends Application {
                     iconImageView,
                     selectIconButton,
                     ignoreDomainCheckBox,
-                    new HBox(10, saveButton, launchButton, deleteButton)
+                    jvmSettingsPane,
+                    new HBox(10, saveButton, launchButton, launchOfflineButton, deleteButton)
             );
 
             // Enable buttons and checkbox
             launchButton.setDisable(false);
+            launchOfflineButton.setDisable(false);
             saveButton.setDisable(false);
             saveButton.setOnAction(e -> controller.saveSelectedEntry(iconImageView));
             deleteButton.setDisable(false);
@@ -322,6 +394,10 @@ public class JnlpLauncherApp extends Application {
         return this.launchButton;
     }
 
+    public Button getLaunchOfflineButton() {
+        return this.launchOfflineButton;
+    }
+
     public TextField getNameField() {
         return this.nameField;
     }
@@ -342,6 +418,46 @@ public class JnlpLauncherApp extends Application {
         return this.ignoreDomainCheckBox;
     }
 
+    public TextField getInitialHeapField() {
+        return this.initialHeapField;
+    }
+
+    public TextField getMaxHeapField() {
+        return this.maxHeapField;
+    }
+
+    public ComboBox<String> getGarbageCollectorBox() {
+        return this.garbageCollectorBox;
+    }
+
+    public ComboBox<String> getRenderingBox() {
+        return this.renderingBox;
+    }
+
+    public TextField getVmArgsField() {
+        return this.vmArgsField;
+    }
+
+    /**
+     * Offers the launcher JVM only to an entry whose launch plan says it is a JavaFX application, any
+     * other application would always fall back to a separate JVM (see InProcessApp).
+     */
+    public void showLaunchMode(LaunchEntry entry) {
+        LaunchPlan plan = entry == null ? null : LaunchPlan.load(entry);
+        if (plan != null && plan.isJavaFxApplication()) {
+            launchModeBox.getItems().setAll(LaunchMode.values());
+            launchModeBox.setValue(entry.getLaunchMode());
+        } else {
+            launchModeBox.getItems().setAll(LaunchMode.SEPARATE_JVM);
+            launchModeBox.setValue(LaunchMode.SEPARATE_JVM);
+        }
+        launchModeBox.setDisable(launchModeBox.getItems().size() < 2);
+    }
+
+    public ComboBox<LaunchMode> getLaunchModeBox() {
+        return this.launchModeBox;
+    }
+
     public ListView<HBox> getListViewJnlp() {
         return this.listViewJnlp;
     }
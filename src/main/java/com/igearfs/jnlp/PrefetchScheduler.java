@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp;
+
+import com.igearfs.jnlp.launch.LaunchPlan;
+import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.util.SystemHints;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps every saved entry warm, so the first launch after a server upgrade is as quick as any other.
+ *
+ * Every minute the scheduler looks for entries whose launch plan is missing or older than
+ * -Djnlp.prefetch.intervalMinutes (default 240) and revalidates them in the background: the JNLP is
+ * fetched again, changed JARs are downloaded and the plan is saved for the next launch. A launch
+ * revalidates its entry too, so an entry in daily use is rarely fetched twice.
+ *
+ * It only works while the machine is idle: nothing was launched for -Djnlp.prefetch.idleMinutes
+ * (default 5) and the CPU load is below -Djnlp.prefetch.maxCpuLoad (default 0.5). It waits while the
+ * machine runs on battery or on a metered network unless -Djnlp.prefetch.onBattery=true or
+ * -Djnlp.prefetch.onMetered=true, see SystemHints. At most -Djnlp.prefetch.concurrency entries
+ * (default 2) are revalidated at a time. -Djnlp.prefetch=false turns it off.
+ */
+public class PrefetchScheduler {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("jnlp.prefetch", "true"));
+    private static final long INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("jnlp.prefetch.intervalMinutes", 240));
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("jnlp.prefetch.idleMinutes", 5));
+    private static final double MAX_CPU_LOAD = Double.parseDouble(System.getProperty("jnlp.prefetch.maxCpuLoad", "0.5"));
+    private static final int CONCURRENCY = Math.max(1, Integer.getInteger("jnlp.prefetch.concurrency", 2));
+    private static final boolean ON_BATTERY = Boolean.parseBoolean(System.getProperty("jnlp.prefetch.onBattery", "false"));
+    private static final boolean ON_METERED = Boolean.parseBoolean(System.getProperty("jnlp.prefetch.onMetered", "false"));
+    private static final long FIRST_CHECK_SECONDS = 120; // Leaves the start of the launcher alone
+    private static final long CHECK_PERIOD_SECONDS = 60;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "prefetch-scheduler");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static final ExecutorService PREFETCHERS = Executors.newFixedThreadPool(CONCURRENCY, runnable -> {
+        Thread thread = new Thread(runnable, "prefetch-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static final Set<String> IN_FLIGHT = ConcurrentHashMap.newKeySet(); // Entry ids queued or running
+    private static final Map<String, Long> LAST_ATTEMPT = new ConcurrentHashMap<>(); // So failing entries wait a whole interval
+    private static volatile List<LaunchEntry> entries = List.of();
+    private static boolean started; // Guarded by the class
+
+    /**
+     * Replaces the entries kept warm with {@code saved}, called whenever the entries are loaded or saved.
+     */
+    public static void schedule(List<LaunchEntry> saved) {
+        if (!ENABLED) {
+            return;
+        }
+        entries = List.copyOf(saved);
+        Set<String> ids = new HashSet<>();
+        for (LaunchEntry entry : saved) {
+            ids.add(entry.getId());
+        }
+        LAST_ATTEMPT.keySet().retainAll(ids);
+        start();
+    }
+
+    private static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        SCHEDULER.scheduleWithFixedDelay(PrefetchScheduler::check, FIRST_CHECK_SECONDS, CHECK_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Queues the entries that are due, when the machine is idle enough to fetch them
+    private static void check() {
+        try {
+            List<LaunchEntry> due = new ArrayList<>();
+            for (LaunchEntry entry : entries) {
+                if (!IN_FLIGHT.contains(entry.getId()) && isDue(entry)) {
+                    due.add(entry);
+                }
+            }
+            // The power and network probes start processes, so they are only asked when there is work
+            if (due.isEmpty() || !isIdle() || !hintsAllow()) {
+                return;
+            }
+            System.out.println("Prefetching " + due.size() + " launch entries in the background");
+            for (LaunchEntry entry : due) {
+                IN_FLIGHT.add(entry.getId());
+                PREFETCHERS.submit(() -> prefetch(entry.getId()));
+            }
+        } catch (RuntimeException e) {
+            // A failed check must not cancel the schedule
+            System.err.println("Prefetch check failed: " + e.getMessage());
+        }
+    }
+
+    private static void prefetch(String id) {
+        try {
+            // Entries wait in the queue, they may have been edited or deleted and the machine may have become busy meanwhile
+            LaunchEntry entry = saved(id);
+            if (entry == null || !isDue(entry) || !isIdle()) {
+                return;
+            }
+            LAST_ATTEMPT.put(entry.getId(), System.currentTimeMillis());
+            if (JnlpLauncher.prefetch(entry)) {
+                System.out.println("Prefetched " + entry.getName());
+            }
+        } catch (Exception e) {
+            System.err.println("Prefetching entry " + id + " failed: " + e.getMessage());
+        } finally {
+            IN_FLIGHT.remove(id);
+        }
+    }
+
+    private static LaunchEntry saved(String id) {
+        for (LaunchEntry entry : entries) {
+            if (entry.getId().equals(id)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // The plan is missing or older than the interval, and the last attempt is too
+    private static boolean isDue(LaunchEntry entry) {
+        long now = System.currentTimeMillis();
+        if (now - LAST_ATTEMPT.getOrDefault(entry.getId(), 0L) < INTERVAL_MILLIS) {
+            return false;
+        }
+        LaunchPlan plan = LaunchPlan.load(entry);
+        return plan == null || now - plan.getValidatedAt() >= INTERVAL_MILLIS;
+    }
+
+    // Nobody launched anything for a while and the CPU has room, an unknown load counts as room
+    private static boolean isIdle() {
+        if (System.currentTimeMillis() - JnlpLauncher.lastLaunchAt() < IDLE_MILLIS) {
+            return false;
+        }
+        return SystemHints.cpuLoad() <= MAX_CPU_LOAD;
+    }
+
+    private static boolean hintsAllow() {
+        return (ON_BATTERY || !SystemHints.isOnBattery()) && (ON_METERED || !SystemHints.isMetered());
+    }
+}
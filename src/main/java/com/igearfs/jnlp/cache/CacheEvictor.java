@@ -0,0 +1,845 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.cache;
+
+import com.igearfs.jnlp.download.JarDownloader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Keeps jnlp_cache within bounds by evicting stored JARs, in the background and a few at a time.
+ *
+ * The unit of eviction is one stored content (a JAR in the ContentStore) together with everything
+ * derived from it: its views in the domain folders, its repacked copy, its extracted native
+ * libraries and its index entries. Content goes when
+ * <ul>
+ *   <li>it was not launched for -Djnlp.cache.maxAgeDays (default 90),</li>
+ *   <li>only servers no saved entry points at any more have a view of it,</li>
+ *   <li>a domain holds more than its quota, -Djnlp.cache.domainQuotaMB (default none) or
+ *       -Djnlp.cache.domainQuotaMB.&lt;host&gt; for one server; only that domain's views are removed,</li>
+ *   <li>the whole cache holds more than -Djnlp.cache.maxSizeMB (default 2048).</li>
+ * </ul>
+ * Quotas and the size cap evict the least recently launched content first, or the least often
+ * launched with -Djnlp.cache.policy=lfu. Abandoned partial downloads and temp files are removed too,
+ * as are the download locks of evicted JARs.
+ * -Djnlp.cache.evict=false turns all of it off.
+ *
+ * Launches only record what they run from in memory (see lease); the evictor resolves and persists
+ * that to jnlp_cache/cache_usage.txt on its own thread. Content leased by a running application, and
+ * anything used or stored since the oldest running application started, is never evicted.
+ *
+ * Launchers sharing the cache (see CacheLock) merge their uses into the one usage file and mark the
+ * content of their running applications as used every period, which the grace time covers. The file
+ * also lists the content of every application running in a JVM of its own, by process id, so it is not
+ * evicted while that process lives, even after the launcher that started it has exited. Only
+ * one of them evicts at a time, and a domain counts as orphaned when no user's saved entries point
+ * at it, as recorded in jnlp_cache/cache_domains.txt.
+ */
+public class CacheEvictor {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("jnlp.cache.evict", "true"));
+    private static final long MAX_BYTES = megabytes("jnlp.cache.maxSizeMB", 2048);
+    private static final long DOMAIN_QUOTA_BYTES = megabytes("jnlp.cache.domainQuotaMB", 0);
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("jnlp.cache.maxAgeDays", 90));
+    private static final boolean LFU = "lfu".equalsIgnoreCase(System.getProperty("jnlp.cache.policy", "lru"));
+
+    // Just stored and about to be launched, or run by another launcher that marks it used every period
+    private static final long GRACE_MILLIS = TimeUnit.MINUTES.toMillis(60);
+    private static final long PARTIAL_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7); // Resumable downloads
+    private static final long TEMP_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long FIRST_STEP_SECONDS = 60;
+    private static final long NEXT_STEP_SECONDS = 5; // While there is more to evict
+    private static final long PERIOD_MINUTES = 30;
+    private static final int REMOVALS_PER_STEP = 25;
+
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-evictor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Filled by launches, drained by the worker
+    private static final Map<Path, Long> TOUCHED = new ConcurrentHashMap<>();
+    private static final List<Lease> LEASES = new CopyOnWriteArrayList<>();
+    private static volatile Set<String> liveDomains; // Null until the saved entries are known
+    private static boolean started; // Guarded by the class
+
+    // Worker thread only
+    private static final Map<String, Usage> USAGE = new HashMap<>(); // By content key
+    private static final Set<String> FORGOTTEN = new HashSet<>(); // Evicted keys, not to be merged back in from the file
+    private static final Map<Path, View> VIEWS = new HashMap<>(); // Domain files resolved to their content
+    private static final Map<String, Set<String>> RUNNING = new HashMap<>(); // Content keys by "pid|start" of a separate application JVM
+    private static String usageStamp = ""; // Size and time of the usage file when last read or written
+    private static boolean usageChanged;
+
+    /**
+     * Paths a running application uses. Leased content is not evicted until the lease is released or
+     * the application it was handed to has ended.
+     */
+    public static class Lease {
+        private final Set<Path> paths;
+        private final long since = System.currentTimeMillis();
+        private volatile BooleanSupplier alive = () -> true;
+        private volatile String process; // "pid|start" of the JVM it was handed to, null inside the launcher
+
+        private Lease(Set<Path> paths) {
+            this.paths = paths;
+        }
+
+        // Ends the lease once the application has ended, pid is that of its own JVM or 0 inside the launcher
+        public void until(long pid, BooleanSupplier alive) {
+            this.alive = alive;
+            if (pid > 0) {
+                process = pid + "|" + ProcessHandle.of(pid).flatMap(handle -> handle.info().startInstant())
+                        .map(Instant::toEpochMilli).orElse(0L);
+            }
+        }
+
+        public void release() {
+            alive = () -> false;
+        }
+
+        private boolean isAlive() {
+            return alive.getAsBoolean();
+        }
+    }
+
+    private static class Usage {
+        long lastUsed;
+        int uses;
+
+        Usage(long lastUsed, int uses) {
+            this.lastUsed = lastUsed;
+            this.uses = uses;
+        }
+    }
+
+    // A file in a domain folder, remembered by size and time so it is only resolved again when replaced
+    private static class View {
+        final long size;
+        final long modified;
+        final String key;
+        final boolean copy; // Not a hardlink, takes space of its own
+
+        View(long size, long modified, String key, boolean copy) {
+            this.size = size;
+            this.modified = modified;
+            this.key = key;
+            this.copy = copy;
+        }
+    }
+
+    // One stored content with everything derived from it, or a domain file that is not in the store
+    private static class Item {
+        final String key; // sha256, or the absolute path of a file not in the store
+        final String sha256;
+        Path file; // The stored JAR or the domain file, null when only derived files are left
+        long bytes;
+        long modified;
+        final Map<String, List<Path>> views = new HashMap<>(); // By domain
+
+        Item(String key, String sha256) {
+            this.key = key;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * Records that a launch runs from {@code paths} and keeps them from being evicted while it runs.
+     * Only memory is touched, paths outside jnlp_cache are ignored.
+     */
+    public static Lease lease(Collection<Path> paths) {
+        Set<Path> cached = new HashSet<>();
+        Path root = root();
+        for (Path path : paths) {
+            Path absolute = path.toAbsolutePath().normalize();
+            if (absolute.startsWith(root)) {
+                cached.add(absolute);
+            }
+        }
+        Lease lease = new Lease(cached);
+        if (ENABLED && !cached.isEmpty()) {
+            LEASES.add(lease);
+            touch(cached);
+        }
+        return lease;
+    }
+
+    /**
+     * Whether a running application of this launcher was handed the stored JAR {@code sha256}, directly
+     * or through one of its views.
+     */
+    public static boolean isLeased(String sha256) {
+        Path object = ContentStore.objectPath(sha256);
+        for (Lease lease : LEASES) {
+            if (!lease.isAlive()) {
+                continue;
+            }
+            for (Path path : lease.paths) {
+                try {
+                    if (Files.exists(path) && Files.exists(object) && Files.isSameFile(path, object)) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    return true; // Cannot tell, so it stays
+                }
+            }
+        }
+        return false;
+    }
+
+    // Counts as a use of the content behind these paths, e.g. lazy parts fetched after the start
+    public static void touch(Collection<Path> paths) {
+        if (!ENABLED) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Path path : paths) {
+            TOUCHED.put(path.toAbsolutePath().normalize(), now);
+        }
+        start();
+    }
+
+    /**
+     * The domains (host names) the saved entries point at. Domain folders of other servers are
+     * evicted; until this is called nothing is evicted for that reason.
+     */
+    public static void retainDomains(Collection<String> domains) {
+        liveDomains = Set.copyOf(domains);
+        if (ENABLED) {
+            WORKER.submit(CacheEvictor::saveDomains);
+        }
+        start();
+    }
+
+    /**
+     * Saves the recorded uses, for callers that exit right after launching.
+     */
+    public static void flush() throws InterruptedException {
+        if (!ENABLED || TOUCHED.isEmpty()) {
+            return;
+        }
+        try {
+            WORKER.submit(() -> {
+                loadUsage();
+                drainTouched(shasByFileName());
+                saveUsage();
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            System.err.println("Could not save cache usage: " + e.getCause().getMessage());
+        }
+    }
+
+    private static synchronized void start() {
+        if (ENABLED && !started) {
+            started = true;
+            WORKER.schedule(CacheEvictor::step, FIRST_STEP_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void step() {
+        boolean more = false;
+        try {
+            recordUsage();
+            try (CacheLock lock = CacheLock.tryAcquire("evict")) {
+                // Otherwise another launcher sharing the cache is evicting it
+                if (lock != null) {
+                    more = evict();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cache eviction failed: " + e.getMessage());
+        } finally {
+            WORKER.schedule(CacheEvictor::step, more ? NEXT_STEP_SECONDS : TimeUnit.MINUTES.toSeconds(PERIOD_MINUTES),
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    // Saves the uses of this launcher, and marks what its running applications use as used now
+    private static void recordUsage() {
+        long now = System.currentTimeMillis();
+        LEASES.removeIf(lease -> !lease.isAlive());
+        loadUsage();
+        Map<String, List<String>> shasByFileName = shasByFileName();
+        drainTouched(shasByFileName);
+        for (Lease lease : LEASES) {
+            String process = lease.process;
+            for (Path path : lease.paths) {
+                String key = keyOf(path, shasByFileName);
+                if (key != null) {
+                    USAGE.computeIfAbsent(key, k -> new Usage(0, 0)).lastUsed = now;
+                    usageChanged = true;
+                    if (process != null) {
+                        RUNNING.computeIfAbsent(process, p -> new HashSet<>()).add(key);
+                    }
+                }
+            }
+        }
+        if (RUNNING.keySet().removeIf(process -> !isRunning(process))) {
+            usageChanged = true;
+        }
+        saveUsage();
+    }
+
+    // One step: removes at most REMOVALS_PER_STEP contents, true when more are due
+    private static boolean evict() throws IOException {
+        long now = System.currentTimeMillis();
+        loadUsage(); // Uses other launchers saved
+        deleteAbandoned(now);
+
+        Map<String, List<String>> shasByFileName = shasByFileName();
+        Map<String, Item> items = scan(shasByFileName);
+
+        // What running applications use, and whatever arrived since the oldest of them started
+        Set<String> pinned = new HashSet<>();
+        long keepAfter = now - GRACE_MILLIS;
+        for (Lease lease : LEASES) {
+            keepAfter = Math.min(keepAfter, lease.since);
+            for (Path path : lease.paths) {
+                String key = keyOf(path, shasByFileName);
+                if (key != null) {
+                    pinned.add(key);
+                }
+            }
+        }
+        // Also those of launchers that have exited, or of other users
+        for (Map.Entry<String, Set<String>> running : RUNNING.entrySet()) {
+            if (isRunning(running.getKey())) {
+                pinned.addAll(running.getValue());
+            }
+        }
+        List<Item> evictable = new ArrayList<>();
+        for (Item item : items.values()) {
+            if (!pinned.contains(item.key) && Math.max(lastUsed(item), item.modified) < keepAfter) {
+                evictable.add(item);
+            }
+        }
+        evictable.sort(LFU ? Comparator.comparingInt(CacheEvictor::uses).thenComparingLong(CacheEvictor::lastUsed)
+                : Comparator.comparingLong(CacheEvictor::lastUsed).thenComparingInt(CacheEvictor::uses));
+
+        // Planned removals, a domain name removes only that domain's views
+        Map<Item, Set<String>> removals = new LinkedHashMap<>();
+        Set<Item> removed = new HashSet<>();
+
+        for (Item item : evictable) {
+            if (MAX_AGE_MILLIS > 0 && lastUsed(item) < now - MAX_AGE_MILLIS) {
+                removals.put(item, null);
+                removed.add(item);
+            }
+        }
+
+        Set<String> domains = liveDomains != null ? sharedDomains() : null;
+        Map<String, Long> domainBytes = new HashMap<>();
+        for (Item item : items.values()) {
+            for (String domain : item.views.keySet()) {
+                domainBytes.merge(domain, removed.contains(item) ? 0 : item.bytes, Long::sum);
+            }
+        }
+        for (Item item : evictable) {
+            if (removed.contains(item)) {
+                continue;
+            }
+            for (String domain : item.views.keySet()) {
+                long quota = quota(domain);
+                boolean orphaned = domains != null && !domains.contains(domain);
+                if (orphaned || (quota > 0 && domainBytes.get(domain) > quota)) {
+                    domainBytes.merge(domain, -item.bytes, Long::sum);
+                    removals.computeIfAbsent(item, key -> new HashSet<>()).add(domain);
+                }
+            }
+            Set<String> domainRemovals = removals.get(item);
+            if (domainRemovals != null && domainRemovals.containsAll(item.views.keySet())) {
+                removals.put(item, null); // No view left, the content goes with them
+                removed.add(item);
+            }
+        }
+
+        if (MAX_BYTES > 0) {
+            long total = 0;
+            for (Item item : items.values()) {
+                if (!removed.contains(item)) {
+                    total += item.bytes;
+                }
+            }
+            for (Item item : evictable) {
+                if (total <= MAX_BYTES) {
+                    break;
+                }
+                if (removed.add(item)) {
+                    removals.put(item, null);
+                    total -= item.bytes;
+                }
+            }
+        }
+
+        int count = 0;
+        long bytes = 0;
+        CacheIndex index = CacheIndex.get();
+        Iterator<Map.Entry<Item, Set<String>>> due = removals.entrySet().iterator();
+        while (due.hasNext() && count < REMOVALS_PER_STEP) {
+            Map.Entry<Item, Set<String>> removal = due.next();
+            due.remove();
+            Item item = removal.getKey();
+            if (removal.getValue() == null ? remove(item, index) : removeViews(item, removal.getValue())) {
+                count++;
+                bytes += removal.getValue() == null ? item.bytes : 0;
+            }
+        }
+        if (count > 0) {
+            index.save();
+            System.out.println("Evicted " + count + " entries from the cache (" + bytes / (1024 * 1024) + " MB freed)");
+        }
+        saveUsage();
+        return !removals.isEmpty();
+    }
+
+    // Stored content, derived copies and domain files, by content key
+    private static Map<String, Item> scan(Map<String, List<String>> shasByFileName) throws IOException {
+        Map<String, Item> items = new HashMap<>();
+        Path objectsDir = CacheLayout.objectsDir();
+        if (Files.isDirectory(objectsDir)) {
+            try (Stream<Path> files = Files.walk(objectsDir, 2)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".jar") && Files.isRegularFile(file)) {
+                        String sha256 = name.substring(0, name.length() - 4);
+                        Item item = items.computeIfAbsent(sha256, key -> new Item(key, key));
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        item.file = file;
+                        item.bytes += attributes.size();
+                        item.modified = attributes.lastModifiedTime().toMillis();
+                    }
+                }
+            }
+        }
+
+        // Repacked copies and extracted native libraries count towards the content they were made from
+        for (Path file : list(CacheLayout.repackedDir())) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".jar") && Files.isRegularFile(file)) {
+                String sha256 = name.substring(0, name.length() - 4);
+                items.computeIfAbsent(sha256, key -> new Item(key, key)).bytes += Files.size(file);
+            }
+        }
+        for (Path directory : list(CacheLayout.nativesDir())) {
+            String name = directory.getFileName().toString();
+            if (Files.isDirectory(directory) && !name.endsWith(".tmp")) {
+                items.computeIfAbsent(name, key -> new Item(key, key)).bytes += sizeOf(directory);
+            }
+        }
+
+        Set<Path> seen = new HashSet<>();
+        for (Path domainDir : list(CacheLayout.root())) {
+            String domain = domainDir.getFileName().toString();
+            if (domain.startsWith("_") || !Files.isDirectory(domainDir)) {
+                continue;
+            }
+            for (Path file : list(domainDir)) {
+                if (!file.getFileName().toString().endsWith(".jar") || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                Path absolute = file.toAbsolutePath().normalize();
+                seen.add(absolute);
+                View view = resolve(absolute, shasByFileName);
+                Item item = items.computeIfAbsent(view.key, key -> new Item(key, null));
+                if (item.sha256 == null) {
+                    item.file = file;
+                    item.modified = view.modified;
+                }
+                if (item.sha256 == null || view.copy) {
+                    item.bytes += view.size;
+                }
+                item.views.computeIfAbsent(domain, key -> new ArrayList<>()).add(file);
+            }
+        }
+        VIEWS.keySet().retainAll(seen);
+        return items;
+    }
+
+    // Domain files are named after the last segment of their URL
+    private static Map<String, List<String>> shasByFileName() {
+        Map<String, List<String>> shasByFileName = new HashMap<>();
+        for (CacheIndex.Entry entry : CacheIndex.get().entries()) {
+            if (entry.getSha256() != null) {
+                String url = entry.getUrl();
+                shasByFileName.computeIfAbsent(url.substring(url.lastIndexOf('/') + 1), key -> new ArrayList<>())
+                        .add(entry.getSha256());
+            }
+        }
+        return shasByFileName;
+    }
+
+    // Which content a domain file shows: a hardlink of a stored JAR, a copy of one, or a file of its own
+    private static View resolve(Path file, Map<String, List<String>> shasByFileName) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        View known = VIEWS.get(file);
+        if (known != null && known.size == size && known.modified == modified) {
+            return known;
+        }
+        String key = file.toString();
+        boolean copy = false;
+        String sameSize = null;
+        int sameSizeCount = 0;
+        for (String sha256 : shasByFileName.getOrDefault(file.getFileName().toString(), List.of())) {
+            Path object = ContentStore.objectPath(sha256);
+            if (!Files.isRegularFile(object)) {
+                continue;
+            }
+            if (Files.isSameFile(file, object)) {
+                key = sha256;
+                sameSizeCount = 0;
+                break;
+            }
+            if (Files.size(object) == size && !sha256.equals(sameSize)) {
+                sameSize = sha256;
+                sameSizeCount++;
+            }
+        }
+        if (sameSizeCount == 1) {
+            key = sameSize; // No hardlinks on this file system, the view is a copy
+            copy = true;
+        }
+        View view = new View(size, modified, key, copy);
+        VIEWS.put(file, view);
+        return view;
+    }
+
+    // The content key of a path handed to a launch, null for paths that are not content
+    private static String keyOf(Path path, Map<String, List<String>> shasByFileName) {
+        Path root = root();
+        if (!path.startsWith(root) || path.getNameCount() <= root.getNameCount()) {
+            return null;
+        }
+        String top = path.getName(root.getNameCount()).toString();
+        String name = path.getFileName().toString();
+        if (top.equals(CacheLayout.objectsDir().getFileName().toString())
+                || top.equals(CacheLayout.repackedDir().getFileName().toString())) {
+            return name.endsWith(".jar") ? name.substring(0, name.length() - 4) : null;
+        }
+        if (top.equals(CacheLayout.nativesDir().getFileName().toString())) {
+            return path.getNameCount() > root.getNameCount() + 1 ? path.getName(root.getNameCount() + 1).toString() : null;
+        }
+        if (top.startsWith("_")) {
+            return null;
+        }
+        try {
+            return Files.isRegularFile(path) ? resolve(path, shasByFileName).key : path.toString();
+        } catch (IOException e) {
+            return path.toString();
+        }
+    }
+
+    private static boolean remove(Item item, CacheIndex index) {
+        try {
+            // The stored file first: on Windows it cannot go while a process still has it open
+            if (item.file != null) {
+                Files.deleteIfExists(item.file);
+            }
+            for (List<Path> views : item.views.values()) {
+                for (Path view : views) {
+                    Files.deleteIfExists(view);
+                }
+            }
+            if (item.sha256 != null) {
+                Files.deleteIfExists(CacheLayout.repackedDir().resolve(item.sha256 + ".jar"));
+                Files.deleteIfExists(CacheLayout.repackedDir().resolve(item.sha256 + ".order"));
+                deleteRecursively(CacheLayout.nativesDir().resolve(item.sha256));
+                for (CacheIndex.Entry entry : index.entries()) {
+                    if (item.sha256.equals(entry.getSha256())) {
+                        index.remove(entry.getUrl());
+                        CacheLock.delete(JarDownloader.lockName(entry.getUrl(), entry.getVersion()));
+                    }
+                }
+            }
+            USAGE.remove(item.key);
+            FORGOTTEN.add(item.key);
+            usageChanged = true;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not evict " + (item.file != null ? item.file : item.key) + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean removeViews(Item item, Set<String> domains) {
+        try {
+            for (String domain : domains) {
+                for (Path view : item.views.getOrDefault(domain, List.of())) {
+                    Files.deleteIfExists(view);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not evict " + item.key + " from " + domains + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Partial downloads nobody resumed, temp files of crashed writers, class data archives nobody uses
+    private static void deleteAbandoned(long now) throws IOException {
+        for (Path file : list(CacheLayout.tempDir())) {
+            if (Files.getLastModifiedTime(file).toMillis() < now - PARTIAL_MAX_AGE_MILLIS) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path domainDir : list(CacheLayout.root())) {
+            if (Files.isDirectory(domainDir) && !domainDir.getFileName().toString().startsWith("_")) {
+                for (Path file : list(domainDir)) {
+                    String name = file.getFileName().toString();
+                    if ((name.endsWith(".link") || name.endsWith(".tmp"))
+                            && Files.getLastModifiedTime(file).toMillis() < now - TEMP_MAX_AGE_MILLIS) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        if (MAX_AGE_MILLIS > 0 && LEASES.isEmpty()) {
+            for (Path file : list(CacheLayout.cdsDir())) {
+                if (Files.getLastModifiedTime(file).toMillis() < now - MAX_AGE_MILLIS) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void drainTouched(Map<String, List<String>> shasByFileName) {
+        for (Path path : new ArrayList<>(TOUCHED.keySet())) {
+            Long time = TOUCHED.remove(path);
+            String key = keyOf(path, shasByFileName);
+            if (time == null || key == null) {
+                continue;
+            }
+            Usage usage = USAGE.computeIfAbsent(key, k -> new Usage(0, 0));
+            // Every path of a launch is touched at once, a content is used once per launch however often it appears
+            if (usage.lastUsed != time) {
+                usage.uses++;
+            }
+            usage.lastUsed = Math.max(usage.lastUsed, time);
+            usageChanged = true;
+        }
+    }
+
+    // Never launched since uses were recorded: the time it was stored
+    private static long lastUsed(Item item) {
+        Usage usage = USAGE.get(item.key);
+        return usage != null ? usage.lastUsed : item.modified;
+    }
+
+    private static int uses(Item item) {
+        Usage usage = USAGE.get(item.key);
+        return usage != null ? usage.uses : 0;
+    }
+
+    private static long quota(String domain) {
+        return megabytes("jnlp.cache.domainQuotaMB." + domain, DOMAIN_QUOTA_BYTES / (1024 * 1024));
+    }
+
+    // Takes in the uses other launchers sharing the cache saved since this one last read them
+    private static void loadUsage() {
+        if (!stamp(CacheLayout.usageFile()).equals(usageStamp)) {
+            mergeUsage();
+        }
+    }
+
+    // key|lastUsed|uses, the later use and the higher count win, and run|pid|start|key for each
+    // running application JVM, kept while that process lives
+    private static void mergeUsage() {
+        Path file = CacheLayout.usageFile();
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            String stamp = stamp(file);
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\\|", -1);
+                if (fields.length == 3 && !FORGOTTEN.contains(fields[0])) {
+                    Usage usage = USAGE.computeIfAbsent(fields[0], key -> new Usage(0, 0));
+                    usage.lastUsed = Math.max(usage.lastUsed, Long.parseLong(fields[1]));
+                    usage.uses = Math.max(usage.uses, Integer.parseInt(fields[2]));
+                } else if (fields.length == 4 && fields[0].equals("run")) {
+                    String process = fields[1] + "|" + fields[2];
+                    if (isRunning(process)) {
+                        RUNNING.computeIfAbsent(process, p -> new HashSet<>()).add(fields[3]);
+                    }
+                }
+            }
+            usageStamp = stamp;
+        } catch (IOException | NumberFormatException e) {
+            // Without uses the store times decide, nothing worse
+            System.err.println("Could not read cache usage " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void saveUsage() {
+        if (!usageChanged) {
+            return;
+        }
+        usageChanged = false;
+        Path file = CacheLayout.usageFile();
+        try (CacheLock lock = CacheLock.acquire("usage")) {
+            mergeUsage();
+            List<String> lines = new ArrayList<>();
+            for (Map.Entry<String, Usage> entry : USAGE.entrySet()) {
+                if (entry.getKey().indexOf('|') < 0) {
+                    lines.add(entry.getKey() + "|" + entry.getValue().lastUsed + "|" + entry.getValue().uses);
+                }
+            }
+            for (Map.Entry<String, Set<String>> running : RUNNING.entrySet()) {
+                for (String key : running.getValue()) {
+                    if (key.indexOf('|') < 0) {
+                        lines.add("run|" + running.getKey() + "|" + key);
+                    }
+                }
+            }
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            usageStamp = stamp(file);
+            FORGOTTEN.clear();
+        } catch (IOException e) {
+            usageChanged = true;
+            System.err.println("Could not save cache usage " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Whether process "pid|start" still runs, and is not a later one that was given the same pid
+    private static boolean isRunning(String process) {
+        String[] fields = process.split("\\|");
+        try {
+            long start = Long.parseLong(fields[1]);
+            return ProcessHandle.of(Long.parseLong(fields[0]))
+                    .filter(ProcessHandle::isAlive)
+                    .map(handle -> start == 0 || handle.info().startInstant()
+                            .map(instant -> instant.toEpochMilli() == start).orElse(true))
+                    .orElse(false);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Saves the domains this user's entries point at, next to those of the other users of the cache
+    private static void saveDomains() {
+        Set<String> domains = liveDomains;
+        String user = System.getProperty("user.name", "").replace('|', '_');
+        Path file = CacheLayout.domainsFile();
+        try (CacheLock lock = CacheLock.acquire("domains")) {
+            List<String> lines = new ArrayList<>();
+            for (String[] fields : readDomains()) {
+                if (!fields[0].equals(user)) {
+                    lines.add(fields[0] + "|" + fields[1]);
+                }
+            }
+            for (String domain : domains) {
+                lines.add(user + "|" + domain);
+            }
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save cache domains " + file + ": " + e.getMessage());
+        }
+    }
+
+    // The domains of every user of the cache, this launcher's own even when they could not be saved
+    private static Set<String> sharedDomains() throws IOException {
+        Set<String> domains = new HashSet<>(liveDomains);
+        for (String[] fields : readDomains()) {
+            domains.add(fields[1]);
+        }
+        return domains;
+    }
+
+    // user|domain
+    private static List<String[]> readDomains() throws IOException {
+        List<String[]> domains = new ArrayList<>();
+        Path file = CacheLayout.domainsFile();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\\|", 2);
+                if (fields.length == 2) {
+                    domains.add(fields);
+                }
+            }
+        }
+        return domains;
+    }
+
+    private static String stamp(Path file) {
+        try {
+            return Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            long size = 0;
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    size += Files.size(file);
+                }
+            }
+            return size;
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static Path root() {
+        return CacheLayout.root().toAbsolutePath().normalize();
+    }
+
+    private static long megabytes(String property, long defaultValue) {
+        return Long.getLong(property, defaultValue) * 1024 * 1024;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persisted metadata about every cached URL, stored next to the cache as jnlp_cache/cache_index.txt.
+ * One line per URL: url|etag|lastModified|size|fetchedAt|sha256|version
+ *
+ * Launchers sharing the cache each hold the index in memory. Saving merges what the others saved
+ * meanwhile under the "index" CacheLock, and refresh picks it up before a download.
+ */
+public class CacheIndex {
+
+    private static CacheIndex instance;
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> removed = ConcurrentHashMap.newKeySet(); // Not to be merged back in from the file
+    private volatile boolean dirty;
+    private volatile String readStamp = ""; // Size and time of the file when this launcher last read or wrote it
+
+    CacheIndex(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    // Loaded once per launcher process and shared by every download thread
+    public static synchronized CacheIndex get() {
+        if (instance == null) {
+            instance = new CacheIndex(CacheLayout.indexFile());
+            instance.load();
+        }
+        return instance;
+    }
+
+    public Entry lookup(String url) {
+        return entries.get(url);
+    }
+
+    // Snapshot of every entry, for background work that walks the whole cache
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public void put(Entry entry) {
+        entries.put(entry.getUrl(), entry);
+        removed.remove(entry.getUrl());
+        dirty = true;
+    }
+
+    public void remove(String url) {
+        if (entries.remove(url) != null) {
+            removed.add(url);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Takes in what other launchers sharing the cache saved since this one last read the file.
+     * Costs one stat when nothing changed.
+     */
+    public synchronized void refresh() {
+        if (!stamp().equals(readStamp)) {
+            merge(read());
+        }
+    }
+
+    private void load() {
+        entries.putAll(read());
+    }
+
+    private Map<String, Entry> read() {
+        Map<String, Entry> read = new HashMap<>();
+        if (!Files.exists(indexFile)) {
+            return read;
+        }
+        String stamp = stamp();
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = Entry.parse(line);
+                if (entry != null) {
+                    read.put(entry.getUrl(), entry);
+                }
+            }
+            readStamp = stamp;
+        } catch (IOException e) {
+            // A broken index only costs full downloads, never a failed launch
+            System.err.println("Could not read cache index " + indexFile + ": " + e.getMessage());
+        }
+        return read;
+    }
+
+    // The later fetch of a URL wins, URLs this launcher removed stay removed
+    private void merge(Map<String, Entry> saved) {
+        for (Entry entry : saved.values()) {
+            Entry current = entries.get(entry.getUrl());
+            if (!removed.contains(entry.getUrl()) && (current == null || entry.getFetchedAt() > current.getFetchedAt())) {
+                entries.put(entry.getUrl(), entry);
+            }
+        }
+    }
+
+    private String stamp() {
+        try {
+            return Files.size(indexFile) + ":" + Files.getLastModifiedTime(indexFile).toMillis();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Writes the index if anything changed. The file is replaced atomically so a crash
+     * while saving never leaves a half-written index behind.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Set<String> removedNow = new HashSet<>(removed);
+        try (CacheLock lock = CacheLock.acquire("index")) {
+            // Entries other launchers saved since this one read the file are kept
+            merge(read());
+            List<Entry> snapshot = new ArrayList<>(entries.values());
+            Files.createDirectories(indexFile.getParent());
+            Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (Entry entry : snapshot) {
+                    writer.write(entry.format());
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            readStamp = stamp();
+            removed.removeAll(removedNow);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Could not save cache index " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Validators and bookkeeping for one cached URL.
+     */
+    public static class Entry {
+        private static final List<String> ESCAPES = List.of("%25", "%7C", "%0A", "%0D"); // Of the URL, see escape
+        private static final String ESCAPED = "%|\n\r";
+
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final long size;
+        private final long fetchedAt;
+        private final String sha256; // Key of the content in the ContentStore
+        private final String version; // JNLP version-id of the content, empty for unversioned JARs
+
+        public Entry(String url, String etag, String lastModified, long size, long fetchedAt, String sha256) {
+            this(url, etag, lastModified, size, fetchedAt, sha256, null);
+        }
+
+        public Entry(String url, String etag, String lastModified, long size, long fetchedAt, String sha256,
+                     String version) {
+            this.url = url;
+            this.etag = etag == null ? "" : etag;
+            this.lastModified = lastModified == null ? "" : lastModified;
+            this.size = size;
+            this.fetchedAt = fetchedAt;
+            this.sha256 = sha256 == null || sha256.isEmpty() ? null : sha256;
+            this.version = version == null ? "" : version;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public boolean hasValidators() {
+            return !etag.isEmpty() || !lastModified.isEmpty();
+        }
+
+        // Same validators, new fetch time (used after a 304 Not Modified)
+        public Entry revalidated(long now) {
+            return new Entry(url, etag, lastModified, size, now, sha256, version);
+        }
+
+        String format() {
+            return escape(url) + "|" + clean(etag) + "|" + clean(lastModified) + "|" + size + "|" + fetchedAt + "|" + clean(sha256)
+                    + "|" + clean(version);
+        }
+
+        static Entry parse(String line) {
+            String[] parts = line.split("\\|", -1);
+            if (parts.length < 5) {
+                return null;
+            }
+            try {
+                // Indexes written before the content store existed have no sha256 column
+                String sha256 = parts.length > 5 ? parts[5] : null;
+                String version = parts.length > 6 ? parts[6] : null;
+                return new Entry(unescape(parts[0]), parts[1], parts[2], Long.parseLong(parts[3]), Long.parseLong(parts[4]), sha256,
+                        version);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // The URL is the key, so it is escaped rather than cleaned: %, |, and line breaks as %XX
+        private static String escape(String url) {
+            return url.replace("%", "%25").replace("|", "%7C").replace("\n", "%0A").replace("\r", "%0D");
+        }
+
+        // Only the escapes written above, so URLs of older indexes read back as they were (unless they hold one)
+        private static String unescape(String url) {
+            StringBuilder result = new StringBuilder(url.length());
+            for (int i = 0; i < url.length(); i++) {
+                int escaped = url.charAt(i) == '%' ? ESCAPES.indexOf(url.substring(i, Math.min(i + 3, url.length()))) : -1;
+                if (escaped >= 0) {
+                    result.append(ESCAPED.charAt(escaped));
+                    i += 2;
+                } else {
+                    result.append(url.charAt(i));
+                }
+            }
+            return result.toString();
+        }
+
+        // The index is pipe delimited, a header value must never break a line apart
+        private static String clean(String value) {
+            return value == null ? "" : value.replace('|', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+}
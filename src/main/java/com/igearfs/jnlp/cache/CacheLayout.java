@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.cache;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Single place that knows where things live inside the jnlp_cache folder.
+ */
+public class CacheLayout {
+
+    // Launchers pointed at the same folder share it, see CacheLock
+    private static final String CACHE_DIR = System.getProperty("jnlp.cache.dir", "jnlp_cache");  // Cache directory
+    private static final String INDEX_FILE = "cache_index.txt";
+    private static final String VERDICTS_FILE = "jar_verdicts.txt";
+    private static final String USAGE_FILE = "cache_usage.txt";
+    private static final String SCRUB_RESULTS_FILE = "scrub_results.txt";
+    private static final String DOMAINS_FILE = "cache_domains.txt";
+    // Internal folders start with '_' so they can never clash with a server host name
+    private static final String OBJECTS_DIR = "_objects";
+    private static final String TEMP_DIR = "_tmp";
+    private static final String LAUNCH_DIR = "_launch";
+    private static final String DESCRIPTORS_DIR = "_descriptors";
+    private static final String PLANS_DIR = "_plans";
+    private static final String CDS_DIR = "_cds";
+    private static final String REPACKED_DIR = "_repacked";
+    private static final String NATIVES_DIR = "_natives";
+    private static final String LIBRARIES_DIR = "_libraries";
+    private static final String LOCKS_DIR = "_locks";
+
+    public static Path root() {
+        return Paths.get(CACHE_DIR);
+    }
+
+    // Per-server folder, e.g. jnlp_cache/localhost
+    public static Path domainDir(String domain) {
+        return root().resolve(domain);
+    }
+
+    // Content-addressed JAR store shared by all domains
+    public static Path objectsDir() {
+        return root().resolve(OBJECTS_DIR);
+    }
+
+    // In-flight downloads, moved into the store once complete
+    public static Path tempDir() {
+        return root().resolve(TEMP_DIR);
+    }
+
+    // Parsed JNLP descriptors, see DescriptorCache
+    public static Path descriptorsDir() {
+        return root().resolve(DESCRIPTORS_DIR);
+    }
+
+    // Resolved launch plans, one per LaunchEntry
+    public static Path plansDir() {
+        return root().resolve(PLANS_DIR);
+    }
+
+    // Class data sharing archives of launched applications, see CdsArchive
+    public static Path cdsDir() {
+        return root().resolve(CDS_DIR);
+    }
+
+    // Launch-optimized copies of stored JARs and their class load order, see JarRepacker
+    public static Path repackedDir() {
+        return root().resolve(REPACKED_DIR);
+    }
+
+    // Extracted <nativelib> JARs, one folder per content hash, see NativeLibraryCache
+    public static Path nativesDir() {
+        return root().resolve(NATIVES_DIR);
+    }
+
+    // Shared client library sets by server version, see LibrarySets
+    public static Path librariesDir() {
+        return root().resolve(LIBRARIES_DIR);
+    }
+
+    // Lock files of the launchers sharing the cache, see CacheLock
+    public static Path locksDir() {
+        return root().resolve(LOCKS_DIR);
+    }
+
+    // Files handed to launched applications (lazy part manifests, bootstrap JAR)
+    public static Path launchDir() {
+        return root().resolve(LAUNCH_DIR);
+    }
+
+    // Validators (ETag, Last-Modified, ...) of every cached JAR URL
+    public static Path indexFile() {
+        return root().resolve(INDEX_FILE);
+    }
+
+    // When and how often stored content was launched, see CacheEvictor
+    public static Path usageFile() {
+        return root().resolve(USAGE_FILE);
+    }
+
+    // Domains the saved entries of every user of the cache point at, see CacheEvictor
+    public static Path domainsFile() {
+        return root().resolve(DOMAINS_FILE);
+    }
+
+    // Integrity verdicts of stored JARs, see CacheScrubber
+    public static Path scrubResultsFile() {
+        return root().resolve(SCRUB_RESULTS_FILE);
+    }
+
+    // Signature verdicts by JAR content hash, see JarVerifier
+    public static Path verdictsFile() {
+        return root().resolve(VERDICTS_FILE);
+    }
+}
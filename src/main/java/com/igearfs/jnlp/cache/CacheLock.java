@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.cache;
+
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock held across every launcher that shares the cache, so one cache can serve all users of a
+ * terminal server. Locks are files under jnlp_cache/_locks locked with FileChannel.lock.
+ *
+ * The operating system releases the lock of a launcher that dies, so a lock is never stale and
+ * nothing has to be recovered. The files themselves stay, empty, and are created writable for every
+ * user of the cache. A lock file is only deleted by delete, by its holder, which first writes a byte
+ * into it: a launcher that was waiting on the deleted file sees it is no longer empty and takes the
+ * lock on the new file instead. Per-artifact locks (see artifact) are deleted with their artifact.
+ *
+ * A lock file another user created before it was made writable for everyone can only be opened for
+ * reading; it is then locked shared, which still keeps out the launchers that hold it exclusively.
+ *
+ * A file lock is held by the whole JVM, so threads of one launcher also take a ReentrantLock per
+ * name, kept only while a thread holds or waits for it.
+ */
+public class CacheLock implements AutoCloseable {
+
+    private static final Set<PosixFilePermission> SHARED_FILE = PosixFilePermissions.fromString("rw-rw-rw-");
+    private static final Set<PosixFilePermission> SHARED_DIR = PosixFilePermissions.fromString("rwxrwxrwx");
+    private static final int OPEN_ATTEMPTS = 3; // Windows refuses to open a file while its deletion is pending
+
+    private static final Map<String, Local> LOCAL = new ConcurrentHashMap<>();
+
+    // The in-process lock of one name, with the threads holding or waiting for it
+    private static class Local {
+        final ReentrantLock lock = new ReentrantLock();
+        int users; // Changed inside LOCAL.compute only
+    }
+
+    private final String name;
+    private final Local local;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final boolean waited;
+
+    private CacheLock(String name, Local local, FileChannel channel, FileLock lock, boolean waited) {
+        this.name = name;
+        this.local = local;
+        this.channel = channel;
+        this.lock = lock;
+        this.waited = waited;
+    }
+
+    /**
+     * Waits for the lock named {@code name} (a plain file name like "index").
+     */
+    public static CacheLock acquire(String name) throws IOException {
+        Local local = enter(name);
+        boolean waited = !local.lock.tryLock();
+        if (waited) {
+            try {
+                local.lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                leave(name);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for cache lock " + name);
+            }
+        }
+        FileChannel channel = null;
+        try {
+            while (true) {
+                channel = open(name);
+                boolean shared = isReadOnly(channel);
+                FileLock lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+                if (lock == null) {
+                    waited = true;
+                    lock = channel.lock(0, Long.MAX_VALUE, shared); // Interrupting closes the channel and throws
+                }
+                if (channel.size() == 0) {
+                    return new CacheLock(name, local, channel, lock, waited);
+                }
+                // Deleted by its holder while we waited, the lock now lives in a new file
+                close(channel);
+                channel = null;
+                waited = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            close(channel);
+            unlock(name, local);
+            throw e;
+        }
+    }
+
+    /**
+     * The lock named {@code name} when nobody holds it, null otherwise.
+     */
+    public static CacheLock tryAcquire(String name) throws IOException {
+        Local local = enter(name);
+        if (!local.lock.tryLock()) {
+            leave(name);
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = open(name);
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, isReadOnly(channel));
+            if (lock == null || channel.size() > 0) {
+                close(channel);
+                unlock(name, local);
+                return null;
+            }
+            return new CacheLock(name, local, channel, lock, false);
+        } catch (IOException | RuntimeException e) {
+            close(channel);
+            unlock(name, local);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the file of lock {@code name}, for an artifact that left the cache. Nothing happens when
+     * someone holds the lock or the file cannot be written.
+     */
+    public static void delete(String name) {
+        try (CacheLock lock = tryAcquire(name)) {
+            if (lock == null || isReadOnly(lock.channel)) {
+                return;
+            }
+            // Tells launchers already waiting on this file that it is gone, see acquire
+            lock.channel.write(ByteBuffer.wrap(new byte[]{1}));
+            Files.deleteIfExists(file(name));
+        } catch (IOException e) {
+            // Stays, an empty lock file does no harm
+        }
+    }
+
+    /**
+     * The lock name for artifact {@code key} (a URL and version), its own file so unrelated artifacts never wait for each other.
+     */
+    public static String artifact(String prefix, String key) {
+        return prefix + "-" + DigestUtil.sha256Hex(key);
+    }
+
+    // Whether another thread or launcher held the lock first, and so may have done the work meanwhile
+    public boolean waited() {
+        return waited;
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            // Released with the channel
+        }
+        close(channel);
+        unlock(name, local);
+    }
+
+    private static Local enter(String name) {
+        return LOCAL.compute(name, (key, local) -> {
+            Local entered = local == null ? new Local() : local;
+            entered.users++;
+            return entered;
+        });
+    }
+
+    // The entry goes once no thread holds or waits for it, LOCAL does not grow with every artifact
+    private static void leave(String name) {
+        LOCAL.computeIfPresent(name, (key, local) -> --local.users == 0 ? null : local);
+    }
+
+    private static void unlock(String name, Local local) {
+        local.lock.unlock();
+        leave(name);
+    }
+
+    private static Path file(String name) {
+        return CacheLayout.locksDir().resolve(name + ".lock");
+    }
+
+    private static FileChannel open(String name) throws IOException {
+        Path dir = CacheLayout.locksDir();
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir);
+            shareWithEveryone(dir, SHARED_DIR);
+        }
+        Path file = file(name);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (!Files.exists(file)) {
+                    try {
+                        Files.createFile(file);
+                        shareWithEveryone(file, SHARED_FILE);
+                    } catch (FileAlreadyExistsException e) {
+                        // Created by another launcher meanwhile
+                    }
+                }
+                return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            } catch (AccessDeniedException e) {
+                if (Files.exists(file) && !Files.isWritable(file)) {
+                    // Created by another user before lock files were writable for everyone
+                    return FileChannel.open(file, StandardOpenOption.READ);
+                }
+                if (attempt >= OPEN_ATTEMPTS) {
+                    throw e;
+                }
+                pause();
+            }
+        }
+    }
+
+    private static boolean isReadOnly(FileChannel channel) {
+        try {
+            channel.write(ByteBuffer.allocate(0));
+            return false;
+        } catch (NonWritableChannelException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // The umask of the creating user would keep every other user of a shared cache out
+    private static void shareWithEveryone(Path path, Set<PosixFilePermission> permissions) {
+        try {
+            Files.setPosixFilePermissions(path, permissions);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Windows: files take the permissions of the folder they are created in
+        }
+    }
+
+    private static void pause() throws InterruptedIOException {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening a cache lock");
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
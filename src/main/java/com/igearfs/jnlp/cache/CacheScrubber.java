@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.cache;
+
+import com.igearfs.jnlp.download.JarDownloader;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.net.LauncherHttpClient;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds damaged JARs in the cache before a launch trips over them.
+ *
+ * In the background every stored JAR is checked on a thread of the lowest priority that spends
+ * about a tenth of its time working: its central directory has to read and its content has to hash
+ * to the name it is stored under. The verdicts are kept in jnlp_cache/scrub_results.txt and a JAR
+ * is checked again after -Djnlp.scrub.intervalDays (default 30). A damaged JAR is removed with its
+ * views and index entries and fetched again from the URLs it was cached for, the declared hash
+ * making sure the same content comes back.
+ *
+ * Before a launch, damaged() checks the classpath in parallel: a file that is a stored JAR the
+ * scrubber checked, or a view of it, takes its verdict while its size and time are unchanged; any
+ * other file has its central directory read, which catches truncated files without reading them whole.
+ *
+ * Content is only removed under the CacheLock of each URL it was downloaded for, so no launcher
+ * links it meanwhile, and never while a running application of this launcher uses it (see
+ * CacheEvictor.isLeased).
+ */
+public class CacheScrubber {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("jnlp.scrub", "true"));
+    private static final long INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("jnlp.scrub.intervalDays", 30));
+    private static final long FIRST_PASS_SECONDS = 120;
+    private static final long PASS_PERIOD_MINUTES = 60;
+    private static final int WORK_SHARE = 10; // Sleeps nine times as long as each check took
+    private static final int SAVE_EVERY = 20; // Checks between saves of the results
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ScheduledExecutorService SCRUBBER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-scrubber");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Pre-launch checks, they hold up a launch and run in parallel
+    private static final ExecutorService CHECKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "jar-check-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final Map<String, Result> RESULTS = new ConcurrentHashMap<>(); // By sha256
+    private static boolean started; // Guarded by the class
+
+    // The verdict on one stored JAR, valid while its size and time stay the same
+    private static class Result {
+        final String sha256;
+        final long size;
+        final long modified;
+        final boolean intact;
+        final long checkedAt;
+
+        Result(String sha256, long size, long modified, boolean intact, long checkedAt) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.modified = modified;
+            this.intact = intact;
+            this.checkedAt = checkedAt;
+        }
+
+        // sha256|size|modified|OK or BAD|checkedAt
+        String format() {
+            return sha256 + "|" + size + "|" + modified + "|" + (intact ? "OK" : "BAD") + "|" + checkedAt;
+        }
+    }
+
+    /**
+     * The cached JARs among {@code jars} that are missing or damaged, checked in parallel. JARs outside
+     * of the cache are not the launcher's to repair and are left out, as are the client library sets,
+     * which are not repaired file by file.
+     */
+    public static List<Path> damaged(List<Path> jars) throws IOException {
+        start();
+        Path root = CacheLayout.root().toAbsolutePath().normalize();
+        Path libraries = CacheLayout.librariesDir().toAbsolutePath().normalize();
+        Map<Path, Future<Boolean>> checks = new LinkedHashMap<>();
+        for (Path jar : jars) {
+            Path absolute = jar.toAbsolutePath().normalize();
+            if (absolute.startsWith(root) && !absolute.startsWith(libraries)) {
+                checks.putIfAbsent(jar, CHECKERS.submit(() -> isDamaged(jar)));
+            }
+        }
+        List<Path> damaged = new ArrayList<>();
+        for (Map.Entry<Path, Future<Boolean>> check : checks.entrySet()) {
+            try {
+                if (check.getValue().get()) {
+                    damaged.add(check.getKey());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while checking cached JARs");
+            } catch (ExecutionException e) {
+                damaged.add(check.getKey());
+            }
+        }
+        return damaged;
+    }
+
+    /**
+     * Removes damaged JARs from the cache, with the stored content they show, so the next download
+     * fetches them again instead of linking the same bytes.
+     */
+    public static void discard(List<Path> jars) {
+        for (Path jar : jars) {
+            try {
+                String sha256 = storedContentOf(jar);
+                if (sha256 != null && CacheEvictor.isLeased(sha256)) {
+                    System.err.println("Damaged cached JAR " + jar + " is in use by a running application, left in place");
+                    continue;
+                }
+                if (sha256 != null) {
+                    removeContent(sha256);
+                }
+                Files.deleteIfExists(jar);
+                System.out.println("Discarded damaged cached JAR " + jar);
+            } catch (IOException e) {
+                System.err.println("Could not discard damaged JAR " + jar + ": " + e.getMessage());
+            }
+        }
+        CacheIndex.get().save();
+    }
+
+    private static boolean isDamaged(Path jar) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return true;
+        }
+        // Views are hardlinks of the stored JAR, the verdict on that file holds while it is unchanged
+        Result known;
+        try {
+            String sha256 = storedContentOf(jar);
+            known = sha256 == null ? null : RESULTS.get(sha256);
+        } catch (IOException e) {
+            known = null;
+        }
+        if (known != null && known.size == attributes.size() && known.modified == attributes.lastModifiedTime().toMillis()) {
+            return !known.intact;
+        }
+        return !hasReadableDirectory(jar);
+    }
+
+    private static boolean hasReadableDirectory(Path jar) {
+        // Opening reads the end record and the whole central directory, a truncated file fails here
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            return zip.size() >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static synchronized void start() {
+        if (ENABLED && !started) {
+            started = true;
+            SCRUBBER.submit(CacheScrubber::loadResults);
+            SCRUBBER.scheduleWithFixedDelay(CacheScrubber::pass, FIRST_PASS_SECONDS,
+                    TimeUnit.MINUTES.toSeconds(PASS_PERIOD_MINUTES), TimeUnit.SECONDS);
+        }
+    }
+
+    // Checks every stored JAR that has no recent verdict, at a tenth of one core
+    private static void pass() {
+        try {
+            List<Path> objects = new ArrayList<>();
+            if (Files.isDirectory(CacheLayout.objectsDir())) {
+                try (Stream<Path> files = Files.walk(CacheLayout.objectsDir(), 2)) {
+                    files.filter(file -> file.getFileName().toString().endsWith(".jar")).forEach(objects::add);
+                }
+            }
+            Set<String> present = new HashSet<>();
+            int checked = 0;
+            int damaged = 0;
+            for (Path object : objects) {
+                String name = object.getFileName().toString();
+                String sha256 = name.substring(0, name.length() - 4);
+                present.add(sha256);
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(object, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue; // Evicted meanwhile
+                }
+                long size = attributes.size();
+                long modified = attributes.lastModifiedTime().toMillis();
+                Result known = RESULTS.get(sha256);
+                // A damaged JAR that could not be repaired yet is checked again on the next pass
+                if (known != null && known.intact && known.size == size && known.modified == modified
+                        && known.checkedAt > System.currentTimeMillis() - INTERVAL_MILLIS) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                boolean intact;
+                try {
+                    intact = hasReadableDirectory(object) && sha256.equals(DigestUtil.sha256Hex(object));
+                } catch (IOException e) {
+                    if (!Files.exists(object)) {
+                        continue;
+                    }
+                    intact = false;
+                }
+                record(new Result(sha256, size, modified, intact, System.currentTimeMillis()));
+                if (!intact) {
+                    repair(sha256);
+                    damaged++;
+                }
+                if (++checked % SAVE_EVERY == 0) {
+                    saveResults();
+                }
+                Thread.sleep(Math.max(50, (System.nanoTime() - start) / 1_000_000 * (WORK_SHARE - 1)));
+            }
+            RESULTS.keySet().retainAll(present);
+            if (checked > 0) {
+                saveResults();
+                System.out.println("Checked " + checked + " cached JARs" + (damaged > 0 ? ", " + damaged + " were damaged" : ""));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cache scrubbing failed: " + e.getMessage());
+        }
+    }
+
+    // Drops the damaged content and fetches it again for every domain that had a view of it
+    private static void repair(String sha256) {
+        Map<CacheIndex.Entry, String> fetches; // Index entry -> domain of its view
+        if (CacheEvictor.isLeased(sha256)) {
+            System.out.println("Stored JAR " + sha256 + " is damaged but in use by a running application, repairing it later");
+            return;
+        }
+        try {
+            fetches = removeContent(sha256);
+            CacheIndex.get().save();
+        } catch (IOException e) {
+            System.err.println("Could not remove damaged JAR " + sha256 + ": " + e.getMessage());
+            return;
+        }
+        System.out.println("Stored JAR " + sha256 + " is damaged, fetching it again");
+        for (Map.Entry<CacheIndex.Entry, String> fetch : fetches.entrySet()) {
+            CacheIndex.Entry entry = fetch.getKey();
+            try {
+                // The downloader places the view by the domain of the URL it is given
+                JarDownloader downloader = new JarDownloader(LauncherHttpClient.client(false), "https://" + fetch.getValue() + "/");
+                downloader.downloadJar(new JarResource(entry.getUrl(), sha256,
+                        entry.getVersion().isEmpty() ? null : entry.getVersion()), bytes -> {
+                });
+            } catch (IOException | RuntimeException e) {
+                // The next launch of an entry using it downloads it
+                System.err.println("Could not fetch " + entry.getUrl() + " again: " + e.getMessage());
+            }
+        }
+        CacheIndex.get().save();
+    }
+
+    /**
+     * Deletes a stored JAR with its views, repacked copy, verdict and index entries. Returns the index
+     * entries that had a view, with the domain of that view.
+     */
+    private static Map<CacheIndex.Entry, String> removeContent(String sha256) throws IOException {
+        CacheIndex index = CacheIndex.get();
+        index.refresh();
+        // Sorted, so two launchers removing the same content take the locks in the same order
+        Set<String> lockNames = new TreeSet<>();
+        for (CacheIndex.Entry entry : index.entries()) {
+            if (sha256.equals(entry.getSha256())) {
+                lockNames.add(JarDownloader.lockName(entry.getUrl(), entry.getVersion()));
+            }
+        }
+        List<CacheLock> locks = new ArrayList<>();
+        try {
+            for (String lockName : lockNames) {
+                locks.add(CacheLock.acquire(lockName));
+            }
+            return removeContentLocked(sha256, index);
+        } finally {
+            for (CacheLock lock : locks) {
+                lock.close();
+            }
+        }
+    }
+
+    private static Map<CacheIndex.Entry, String> removeContentLocked(String sha256, CacheIndex index) throws IOException {
+        Path object = ContentStore.objectPath(sha256);
+        Map<CacheIndex.Entry, String> viewed = new LinkedHashMap<>();
+        for (CacheIndex.Entry entry : index.entries()) {
+            if (!sha256.equals(entry.getSha256())) {
+                continue;
+            }
+            String fileName = JarDownloader.getFileNameFromUrl(entry.getUrl());
+            for (Path domainDir : domainDirs()) {
+                Path view = domainDir.resolve(fileName);
+                if (Files.exists(object) && Files.exists(view) && Files.isSameFile(view, object)) {
+                    Files.delete(view);
+                    viewed.put(entry, domainDir.getFileName().toString());
+                }
+            }
+            index.remove(entry.getUrl());
+        }
+        Files.deleteIfExists(object);
+        Files.deleteIfExists(CacheLayout.repackedDir().resolve(sha256 + ".jar"));
+        RESULTS.remove(sha256);
+        return viewed;
+    }
+
+    // The stored content a cached file shows: the file itself when it is stored, the JAR it is a hardlink of otherwise
+    private static String storedContentOf(Path jar) throws IOException {
+        Path absolute = jar.toAbsolutePath().normalize();
+        if (absolute.startsWith(CacheLayout.objectsDir().toAbsolutePath().normalize())) {
+            String name = absolute.getFileName().toString();
+            return name.endsWith(".jar") ? name.substring(0, name.length() - 4) : null;
+        }
+        if (!Files.exists(jar)) {
+            return null;
+        }
+        String fileName = jar.getFileName().toString();
+        for (CacheIndex.Entry entry : CacheIndex.get().entries()) {
+            if (entry.getSha256() != null && fileName.equals(JarDownloader.getFileNameFromUrl(entry.getUrl()))) {
+                Path object = ContentStore.objectPath(entry.getSha256());
+                if (Files.exists(object) && Files.isSameFile(jar, object)) {
+                    return entry.getSha256();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Path> domainDirs() throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        if (!Files.isDirectory(CacheLayout.root())) {
+            return dirs;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(CacheLayout.root())) {
+            for (Path child : children) {
+                if (Files.isDirectory(child) && !child.getFileName().toString().startsWith("_")) {
+                    dirs.add(child);
+                }
+            }
+        }
+        return dirs;
+    }
+
+    private static void record(Result result) {
+        RESULTS.put(result.sha256, result);
+    }
+
+    private static void loadResults() {
+        Path file = CacheLayout.scrubResultsFile();
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\\|", -1);
+                if (fields.length == 5) {
+                    record(new Result(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            "OK".equals(fields[3]), Long.parseLong(fields[4])));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Everything is simply checked again
+            System.err.println("Could not read scrub results " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void saveResults() {
+        List<String> lines = new ArrayList<>();
+        for (Result result : RESULTS.values()) {
+            lines.add(result.format());
+        }
+        Path file = CacheLayout.scrubResultsFile();
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save scrub results " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.cache;
+
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Content-addressed JAR store shared by every server, jnlp_cache/_objects/ab/abcdef....jar
+ *
+ * The per-domain folders are only views: hardlinks into the store (or copies when the file
+ * system cannot link), so identical JARs served by many servers are stored and fetched once.
+ */
+public class ContentStore {
+
+    public static Path objectPath(String sha256) {
+        return CacheLayout.objectsDir().resolve(sha256.substring(0, 2)).resolve(sha256 + ".jar");
+    }
+
+    public static boolean contains(String sha256) {
+        return sha256 != null && Files.isRegularFile(objectPath(sha256));
+    }
+
+    /**
+     * Moves a fully written and hashed file into the store. When the content is already
+     * stored the temp file is simply dropped.
+     */
+    public static Path store(Path tempFile, String sha256) throws IOException {
+        Path object = objectPath(sha256);
+        if (Files.exists(object)) {
+            Files.deleteIfExists(tempFile);
+            return object;
+        }
+        Files.createDirectories(object.getParent());
+        try {
+            Files.move(tempFile, object, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another download of the same content won the race
+            Files.deleteIfExists(tempFile);
+        }
+        return object;
+    }
+
+    /**
+     * Brings a file cached before the store existed into the store and returns its hash.
+     * The file stays where it is, the object becomes a second link to it.
+     */
+    public static String adopt(Path existing) throws IOException {
+        String sha256 = DigestUtil.sha256Hex(existing);
+        Path object = objectPath(sha256);
+        if (!Files.exists(object)) {
+            Files.createDirectories(object.getParent());
+            try {
+                Files.createLink(object, existing);
+            } catch (FileAlreadyExistsException e) {
+                // Adopted by another launcher meanwhile
+            } catch (UnsupportedOperationException | IOException e) {
+                // Copied next to the store first, launchers sharing the cache never see half an object
+                Files.createDirectories(CacheLayout.tempDir());
+                Path tempFile = Files.createTempFile(CacheLayout.tempDir(), sha256, ".adopt");
+                Files.copy(existing, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                store(tempFile, sha256);
+            }
+        }
+        return sha256;
+    }
+
+    /**
+     * Makes {@code viewPath} show the stored content and returns the path to put on the classpath.
+     * Falls back to the object itself when the view cannot be replaced, e.g. because a running
+     * client on Windows still holds the old file open.
+     */
+    public static Path link(String sha256, Path viewPath) throws IOException {
+        Path object = objectPath(sha256);
+        if (Files.exists(viewPath) && Files.isSameFile(viewPath, object)) {
+            return viewPath;
+        }
+
+        Files.createDirectories(viewPath.getParent());
+        // Named per launcher, launchers sharing the cache may link the same view at once
+        Path tempLink = viewPath.resolveSibling(viewPath.getFileName() + "." + ProcessHandle.current().pid() + ".link");
+        try {
+            Files.deleteIfExists(tempLink);
+            try {
+                Files.createLink(tempLink, object);
+            } catch (UnsupportedOperationException | IOException e) {
+                // No hardlinks on this file system (or across volumes), a copy still works
+                Files.copy(object, tempLink, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tempLink, viewPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return viewPath;
+        } catch (IOException e) {
+            Files.deleteIfExists(tempLink);
+            System.out.println("Could not update " + viewPath + " (" + e.getMessage() + "), using " + object);
+            return object;
+        }
+    }
+}
@@ -11,7 +11,11 @@ package com.igearfs.jnlp.controller;
 
 import com.igearfs.jnlp.JnlpLauncher;
 import com.igearfs.jnlp.JnlpLauncherApp;
+import com.igearfs.jnlp.launch.JvmOptions;
+import com.igearfs.jnlp.launch.LaunchPlan;
+import com.igearfs.jnlp.model.JvmProfile;
 import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.model.LaunchMode;
 import com.igearfs.jnlp.util.ColorGridCell;
 import com.igearfs.jnlp.util.LaunchEntryManager;
 import javafx.geometry.Pos;
@@ -21,6 +25,7 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import static com.igearfs.jnlp.util.LaunchEntryManager.saveEntriesToFile;
 
@@ -29,10 +34,17 @@ public class LaunchEntryController {
     private final List<LaunchEntry> entries;
     private final Button saveButton;
     private final Button launchButton;
+    private final Button launchOfflineButton;
     private final TextField nameField;
     private final TextField urlField;
     private final TextArea noteField;
     private final CheckBox ignoreDomainCheckBox;
+    private final TextField initialHeapField;
+    private final TextField maxHeapField;
+    private final ComboBox<String> garbageCollectorBox;
+    private final ComboBox<String> renderingBox;
+    private final TextField vmArgsField;
+    private final ComboBox<LaunchMode> launchModeBox;
     private final Button deleteButton;
     private final ListView<HBox> listViewJnlp;
     private final TextField searchField;
@@ -42,11 +54,18 @@ public class LaunchEntryController {
         this.entries = app.getEntries();
         this.saveButton = app.getSaveButton();
         this.launchButton = app.getLaunchButton();
+        this.launchOfflineButton = app.getLaunchOfflineButton();
         this.nameField = app.getNameField();
         this.urlField = app.getUrlField();
         this.noteField = app.getNoteField();
         this.deleteButton = app.getDeleteButton();
         this.ignoreDomainCheckBox = app.getIgnoreDomainCheckBox();
+        this.initialHeapField = app.getInitialHeapField();
+        this.maxHeapField = app.getMaxHeapField();
+        this.garbageCollectorBox = app.getGarbageCollectorBox();
+        this.renderingBox = app.getRenderingBox();
+        this.vmArgsField = app.getVmArgsField();
+        this.launchModeBox = app.getLaunchModeBox();
         this.listViewJnlp = app.getListViewJnlp();
         this.searchField = app.getSearchField();
 
@@ -58,12 +77,19 @@ public class LaunchEntryController {
             int selectedIndex = listViewJnlp.getItems().indexOf(selectedItem);
             LaunchEntry selectedEntry = entries.get(selectedIndex);
 
+            JvmProfile jvmProfile = readJvmProfile();
+            if (jvmProfile == null) {
+                return;
+            }
+
             // Save the original ID before changes
             String selectedEntryId = selectedEntry.getId();
             selectedEntry.setName(nameField.getText());
             selectedEntry.setUrl(urlField.getText());
             selectedEntry.setNote(noteField.getText());
             selectedEntry.setIgnoreDomainValidation(ignoreDomainCheckBox.isSelected());
+            selectedEntry.setJvmProfile(jvmProfile);
+            selectedEntry.setLaunchMode(launchModeBox.getValue());
             if(ColorGridCell.lastSelectedCell != null) {
                 selectedEntry.setIconPath(ColorGridCell.lastSelectedCell.getIconName());
             }
@@ -81,6 +107,37 @@ public class LaunchEntryController {
         }
     }
 
+    /**
+     * The JVM settings from the form, or null (after telling the user why) when they cannot be used.
+     */
+    private JvmProfile readJvmProfile() {
+        String initialHeap = initialHeapField.getText().trim();
+        String maxHeap = maxHeapField.getText().trim();
+        if ((!initialHeap.isEmpty() && !JvmOptions.isValidSize(initialHeap)) || (!maxHeap.isEmpty() && !JvmOptions.isValidSize(maxHeap))) {
+            showErrorAlert("Heap sizes are a number with an optional unit, like 512m or 2g.");
+            return null;
+        }
+
+        String vmArgs = vmArgsField.getText().trim();
+        List<String> rejected = new ArrayList<>();
+        if (!vmArgs.isEmpty()) {
+            for (String arg : vmArgs.split("\\s+")) {
+                if (!JvmOptions.isAllowed(arg)) {
+                    rejected.add(arg);
+                }
+            }
+        }
+        if (!rejected.isEmpty()) {
+            showErrorAlert("These JVM arguments are not allowed: " + String.join(" ", rejected));
+            return null;
+        }
+
+        String garbageCollector = garbageCollectorBox.getValue();
+        return new JvmProfile(initialHeap, maxHeap,
+                JnlpLauncherApp.GC_DEFAULT.equals(garbageCollector) ? null : garbageCollector,
+                renderingBox.getValue(), vmArgs);
+    }
+
     public void populateListView() {
         listViewJnlp.getItems().clear();
         String currentSearchText = searchField.getText();
@@ -184,6 +241,22 @@ public class LaunchEntryController {
         }
     }
 
+    // Starts the entry from its cached launch plan, without contacting the server
+    public void launchSelectedEntryOffline() {
+        HBox selectedItem = listViewJnlp.getSelectionModel().getSelectedItem();
+
+        if (selectedItem != null) {
+            int selectedIndex = listViewJnlp.getItems().indexOf(selectedItem);
+            LaunchEntry selectedEntry = entries.get(selectedIndex);
+
+            try {
+                JnlpLauncher.launchOffline(selectedEntry);
+            } catch (Exception e) {
+                showErrorAlert(e.getMessage());
+            }
+        }
+    }
+
     public void showErrorAlert(String errorMessage) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
@@ -209,6 +282,7 @@ public class LaunchEntryController {
                     // Delete entry from the list
                     entries.remove(selectedEntry);
                     saveEntriesToFile(entries);
+                    LaunchPlan.delete(selectedEntry.getId());
                     resetRightPane();
                     populateListView();
                 }
@@ -223,7 +297,14 @@ public class LaunchEntryController {
         noteField.clear();
         ignoreDomainCheckBox.setSelected(true);  // Default to true
         ignoreDomainCheckBox.setDisable(true);
+        initialHeapField.clear();
+        maxHeapField.clear();
+        garbageCollectorBox.setValue(JnlpLauncherApp.GC_DEFAULT);
+        renderingBox.setValue(JvmProfile.RENDERING_SOFTWARE);
+        vmArgsField.clear();
+        app.showLaunchMode(null);
         launchButton.setDisable(true);
+        launchOfflineButton.setDisable(true);
         saveButton.setDisable(true);
         deleteButton.setDisable(true);
     }
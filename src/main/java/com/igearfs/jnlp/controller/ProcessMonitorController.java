@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.controller;
+
+import com.igearfs.jnlp.launch.ChildProcess;
+import com.igearfs.jnlp.launch.ProcessSupervisor;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Window listing every application the launcher started, with its resource use, refreshed every two seconds.
+ */
+public class ProcessMonitorController {
+
+    private static final DateTimeFormatter START_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private Stage stage;
+
+    public void show() {
+        // One window is enough, bring it to the front when it is already open
+        if (stage != null && stage.isShowing()) {
+            stage.toFront();
+            return;
+        }
+
+        TableView<ChildProcess> table = new TableView<>();
+        table.getColumns().add(column("Entry", ChildProcess::getEntryName));
+        table.getColumns().add(column("PID", child -> child.isInProcess() ? "launcher" : String.valueOf(child.getPid())));
+        table.getColumns().add(column("Started", child -> START_FORMAT.format(child.getStartTime())));
+        table.getColumns().add(column("Uptime", child -> formatDuration(child.getUptime())));
+        table.getColumns().add(column("CPU Time", child -> child.getCpuTime() == null ? "-" : formatDuration(child.getCpuTime())));
+        table.getColumns().add(column("Memory", child -> child.getResidentBytes() < 0 ? "-"
+                : child.getResidentBytes() / (1024 * 1024) + " MB"));
+        table.getColumns().add(column("Status", child -> child.isAlive() ? "Running" : "Exited (" + child.getExitCode() + ")"));
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        Button stopButton = new Button("Stop");
+        stopButton.setOnAction(e -> {
+            ChildProcess selected = table.getSelectionModel().getSelectedItem();
+            if (selected != null && selected.isAlive()) {
+                Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+                alert.setTitle("Confirm Stop");
+                alert.setHeaderText("Stop this application?");
+                alert.setContentText(selected.getEntryName() + " (pid " + selected.getPid() + ")");
+                alert.showAndWait().ifPresent(response -> {
+                    if (response == ButtonType.OK) {
+                        selected.stop();
+                    }
+                });
+            }
+        });
+
+        Button outputButton = new Button("Show Output");
+        outputButton.setOnAction(e -> {
+            ChildProcess selected = table.getSelectionModel().getSelectedItem();
+            if (selected != null) {
+                showOutput(selected);
+            }
+        });
+
+        Button clearButton = new Button("Clear Exited");
+        clearButton.setOnAction(e -> {
+            ProcessSupervisor.clearExited();
+            refresh(table);
+        });
+
+        HBox buttons = new HBox(10, stopButton, outputButton, clearButton);
+        buttons.setAlignment(Pos.CENTER_RIGHT);
+
+        VBox layout = new VBox(10, table, buttons);
+        layout.setPadding(new Insets(10));
+
+        stage = new Stage();
+        stage.setTitle("Running Applications");
+        stage.setScene(new Scene(layout, 750, 400));
+
+        Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(2), e -> refresh(table)));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+        stage.setOnHidden(e -> timeline.stop());
+
+        refresh(table);
+        timeline.play();
+        stage.show();
+    }
+
+    // Sampling may start a tasklist or ps process, so it runs off the FX thread
+    private void refresh(TableView<ChildProcess> table) {
+        CompletableFuture.supplyAsync(ProcessSupervisor::snapshot).thenAccept(children -> Platform.runLater(() -> {
+            ChildProcess selected = table.getSelectionModel().getSelectedItem();
+            table.getItems().setAll(children);
+            if (selected != null && children.contains(selected)) {
+                table.getSelectionModel().select(selected);
+            }
+            table.refresh();
+        }));
+    }
+
+    private void showOutput(ChildProcess child) {
+        List<String> output = child.getRecentOutput();
+        TextArea textArea = new TextArea(String.join("\n", output));
+        textArea.setEditable(false);
+        textArea.setWrapText(false);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Output");
+        alert.setHeaderText(child.getEntryName() + " (pid " + child.getPid() + "), last " + output.size() + " lines");
+        alert.getDialogPane().setContent(textArea);
+        alert.setResizable(true);
+        alert.showAndWait();
+    }
+
+    private static TableColumn<ChildProcess, String> column(String title, Function<ChildProcess, String> value) {
+        TableColumn<ChildProcess, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new SimpleStringProperty(value.apply(cell.getValue())));
+        return column;
+    }
+
+    private static String formatDuration(java.time.Duration duration) {
+        long seconds = duration.getSeconds();
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.download;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.function.LongConsumer;
+
+/**
+ * NIO copy loops used by the download path.
+ *
+ * Bytes move through one large direct buffer per thread: the file channel writes straight from it
+ * and the digest sees the very same bytes, so a file never has to be read a second time to be hashed.
+ * See TransferBenchmark in the test sources for numbers against the old 4 KB stream loop.
+ */
+public class ChannelTransfer {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // Download threads are pooled, so each one allocates its direct buffer exactly once
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * Copies {@code source} to the current position of {@code target} until end of stream,
+     * feeding every byte into {@code digest}. Returns the number of bytes copied.
+     */
+    public static long copy(ReadableByteChannel source, FileChannel target, MessageDigest digest,
+                            LongConsumer progress) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        long total = 0;
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Transfer cancelled");
+            }
+            if (read == 0) {
+                continue;
+            }
+            buffer.flip();
+            // The digest consumes a duplicate, the write below still sees the whole chunk
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            total += read;
+            progress.accept(read);
+            buffer.clear();
+        }
+        return total;
+    }
+
+    /**
+     * Hashes the first {@code length} bytes of a file, used when resuming a partial download.
+     */
+    public static void hash(Path file, long length, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int read = channel.read(buffer);
+                if (read == -1) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                buffer.flip();
+                digest.update(buffer);
+                remaining -= read;
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+}
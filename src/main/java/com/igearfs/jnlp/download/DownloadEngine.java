@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.download;
+
+import com.igearfs.jnlp.model.JarResource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Fetches a batch of JAR URLs in parallel.
+ *
+ * The global limit is the size of a shared worker pool, the per-host limit is an adaptive
+ * window that grows while adding streams still improves the measured throughput of the host
+ * and shrinks when it stops doing so. The first failing download cancels the rest of the batch.
+ */
+public class DownloadEngine {
+
+    private static final int DEFAULT_MAX_TOTAL = 16;
+    private static final int DEFAULT_MAX_PER_HOST = 8;
+    private static final int INITIAL_PER_HOST = 4;
+
+    /**
+     * One unit of work handed to the engine. Implementations report every chunk of bytes
+     * that actually crossed the network to {@code progress} so the host limiter can measure throughput.
+     */
+    @FunctionalInterface
+    public interface DownloadTask {
+        Path download(JarResource jar, LongConsumer progress) throws IOException;
+    }
+
+    private final int maxPerHost;
+    private final ExecutorService executor;
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    public DownloadEngine() {
+        this(Integer.getInteger("jnlp.download.maxTotal", DEFAULT_MAX_TOTAL),
+                Integer.getInteger("jnlp.download.maxPerHost", DEFAULT_MAX_PER_HOST));
+    }
+
+    public DownloadEngine(int maxTotal, int maxPerHost) {
+        this.maxPerHost = Math.max(1, maxPerHost);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxTotal), runnable -> {
+            Thread thread = new Thread(runnable, "jar-download-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Downloads every JAR and returns the resulting paths in the same order as {@code jars}.
+     * Blocks until all downloads finished, or throws as soon as one of them failed.
+     */
+    public List<Path> downloadAll(List<JarResource> jars, DownloadTask task) throws IOException {
+        List<Transfer> transfers = new ArrayList<>(jars.size());
+        BlockingQueue<Transfer> completed = new LinkedBlockingQueue<>();
+
+        for (JarResource jar : jars) {
+            HostLimiter limiter = hostLimiters.computeIfAbsent(hostOf(jar.getUrl()),
+                    host -> new HostLimiter(Math.min(INITIAL_PER_HOST, maxPerHost), maxPerHost, executor));
+            Transfer transfer = new Transfer(jar, task, completed);
+            transfers.add(transfer);
+            // Queued per host, a worker only picks it up once the host has a free slot
+            limiter.enqueue(transfer);
+        }
+
+        try {
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer done = completed.take();
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    cancelAll(transfers);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw new IOException("Failed to download " + done.url + ": " + cause.getMessage(), cause);
+                    }
+                    throw new IOException("Failed to download " + done.url, cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAll(transfers);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading JARs");
+        }
+
+        List<Path> paths = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            try {
+                paths.add(transfer.get());
+            } catch (InterruptedException | ExecutionException e) {
+                // Every transfer already completed successfully above
+                throw new IllegalStateException(e);
+            }
+        }
+        return paths;
+    }
+
+    // One JAR of a batch, reports itself to the batch once it completed, failed or was cancelled
+    private static class Transfer extends FutureTask<Path> {
+        final String url;
+        final AtomicLong transferred;
+        private final BlockingQueue<Transfer> completed;
+
+        Transfer(JarResource jar, DownloadTask task, BlockingQueue<Transfer> completed) {
+            this(jar, task, completed, new AtomicLong());
+        }
+
+        private Transfer(JarResource jar, DownloadTask task, BlockingQueue<Transfer> completed, AtomicLong transferred) {
+            super(() -> task.download(jar, transferred::addAndGet));
+            this.url = jar.getUrl();
+            this.transferred = transferred;
+            this.completed = completed;
+        }
+
+        @Override
+        protected void done() {
+            completed.add(this);
+        }
+    }
+
+    private static void cancelAll(List<Transfer> transfers) {
+        for (Transfer transfer : transfers) {
+            transfer.cancel(true);
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            URL parsed = new URL(url);
+            return parsed.getHost() + ":" + parsed.getPort();
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Additive-increase / multiplicative-decrease window of concurrent streams for one host.
+     * A sample is taken once per "round" (as many completed transfers as the current limit).
+     *
+     * Transfers wait in a queue of their own host rather than on a worker, so a host at its limit
+     * never holds up the transfers of other hosts.
+     */
+    static class HostLimiter {
+        private final int max;
+        private final Executor executor;
+        private final Deque<Transfer> pending = new ArrayDeque<>();
+        private int limit;
+        private int active;
+
+        private long sampleBytes;
+        private long sampleNanos;
+        private int sampleCount;
+        private double lastThroughput;
+
+        HostLimiter(int initial, int max, Executor executor) {
+            this.limit = Math.max(1, initial);
+            this.max = max;
+            this.executor = executor;
+        }
+
+        synchronized void enqueue(Transfer transfer) {
+            pending.add(transfer);
+            startPending();
+        }
+
+        private synchronized void release(long bytes, long elapsedNanos) {
+            active--;
+            // Cache hits moved no bytes and would only skew the measurement
+            if (bytes > 0) {
+                sample(bytes, elapsedNanos);
+            }
+            startPending();
+        }
+
+        // Hands queued transfers to the workers while the host has free slots
+        private void startPending() {
+            while (active < limit && !pending.isEmpty()) {
+                Transfer transfer = pending.poll();
+                if (transfer.isDone()) {
+                    continue; // Cancelled while it waited
+                }
+                active++;
+                try {
+                    executor.execute(() -> run(transfer));
+                } catch (RejectedExecutionException e) {
+                    active--;
+                    transfer.cancel(false);
+                }
+            }
+        }
+
+        private void run(Transfer transfer) {
+            long start = System.nanoTime();
+            try {
+                transfer.run();
+            } finally {
+                release(transfer.transferred.get(), System.nanoTime() - start);
+            }
+        }
+
+        private void sample(long bytes, long elapsedNanos) {
+            sampleBytes += bytes;
+            // Transfers of one round overlap, so the longest one approximates the wall time of the round
+            sampleNanos = Math.max(sampleNanos, elapsedNanos);
+            if (++sampleCount < limit) {
+                return;
+            }
+
+            double throughput = sampleBytes / Math.max(1.0, sampleNanos);
+            if (lastThroughput == 0 || throughput > lastThroughput * 1.1) {
+                limit = Math.min(max, limit + 1);
+            } else if (throughput < lastThroughput * 0.9) {
+                limit = Math.max(1, limit / 2);
+            }
+            lastThroughput = throughput;
+            sampleBytes = 0;
+            sampleNanos = 0;
+            sampleCount = 0;
+        }
+
+        synchronized int getLimit() {
+            return limit;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.download;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Applies a JARDiff (application/x-java-archive-diff) to the JAR we already hold.
+ *
+ * A JARDiff is itself a JAR: every entry in it is new or changed, and META-INF/INDEX.JD lists
+ * the entries to drop ("remove name") or to rename ("move oldName newName"). Everything else
+ * is carried over from the old JAR unchanged.
+ */
+public class JarDiffPatcher {
+
+    private static final String INDEX_NAME = "META-INF/INDEX.JD";
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    public static void apply(Path oldJar, Path diffJar, Path target) throws IOException {
+        try (ZipFile oldZip = new ZipFile(oldJar.toFile());
+             ZipFile diffZip = new ZipFile(diffJar.toFile())) {
+
+            Set<String> removes = new HashSet<>();
+            Map<String, String> moves = new LinkedHashMap<>(); // new name -> old name
+            ZipEntry indexEntry = diffZip.getEntry(INDEX_NAME);
+            if (indexEntry != null) {
+                readIndex(diffZip, indexEntry, removes, moves);
+            }
+
+            // Decide where every entry of the patched JAR comes from before writing anything
+            Map<String, Source> plan = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> diffEntries = diffZip.entries();
+            while (diffEntries.hasMoreElements()) {
+                ZipEntry entry = diffEntries.nextElement();
+                if (!entry.getName().equals(INDEX_NAME)) {
+                    plan.put(entry.getName(), new Source(diffZip, entry));
+                }
+            }
+            Set<String> movedAway = new HashSet<>();
+            for (Map.Entry<String, String> move : moves.entrySet()) {
+                ZipEntry oldEntry = oldZip.getEntry(move.getValue());
+                if (oldEntry == null) {
+                    throw new IOException("JARDiff moves missing entry " + move.getValue());
+                }
+                plan.putIfAbsent(move.getKey(), new Source(oldZip, oldEntry));
+                movedAway.add(move.getValue());
+            }
+            Enumeration<? extends ZipEntry> oldEntries = oldZip.entries();
+            while (oldEntries.hasMoreElements()) {
+                ZipEntry entry = oldEntries.nextElement();
+                String name = entry.getName();
+                if (!removes.contains(name) && !movedAway.contains(name)) {
+                    plan.putIfAbsent(name, new Source(oldZip, entry));
+                }
+            }
+
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(target))) {
+                // Readers such as JarInputStream expect the manifest up front
+                Source manifest = plan.remove(MANIFEST_NAME);
+                if (manifest != null) {
+                    copy(MANIFEST_NAME, manifest, out);
+                }
+                for (Map.Entry<String, Source> entry : plan.entrySet()) {
+                    copy(entry.getKey(), entry.getValue(), out);
+                }
+            }
+        }
+    }
+
+    private static void readIndex(ZipFile diffZip, ZipEntry indexEntry, Set<String> removes,
+                                  Map<String, String> moves) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(diffZip.getInputStream(indexEntry),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> tokens = tokenize(line);
+                if (tokens.isEmpty()) {
+                    continue;
+                }
+                switch (tokens.get(0)) {
+                    case "remove":
+                        if (tokens.size() != 2) {
+                            throw new IOException("Malformed JARDiff index line: " + line);
+                        }
+                        removes.add(tokens.get(1));
+                        break;
+                    case "move":
+                        if (tokens.size() != 3) {
+                            throw new IOException("Malformed JARDiff index line: " + line);
+                        }
+                        moves.put(tokens.get(2), tokens.get(1));
+                        break;
+                    default:
+                        // "version 1.0" header and unknown commands carry nothing we need
+                        break;
+                }
+            }
+        }
+    }
+
+    // Entry names are separated by spaces, a space inside a name is escaped with a backslash
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                current.append(line.charAt(++i));
+            } else if (c == ' ') {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private static void copy(String name, Source source, ZipOutputStream out) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(source.entry.getTime());
+        out.putNextEntry(entry);
+        try (InputStream in = source.zip.getInputStream(source.entry)) {
+            in.transferTo(out);
+        }
+        out.closeEntry();
+    }
+
+    private static class Source {
+        private final ZipFile zip;
+        private final ZipEntry entry;
+
+        Source(ZipFile zip, ZipEntry entry) {
+            this.zip = zip;
+            this.entry = entry;
+        }
+    }
+}
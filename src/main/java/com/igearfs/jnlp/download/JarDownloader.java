@@ -0,0 +1,572 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.download;
+
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.cache.CacheLock;
+import com.igearfs.jnlp.cache.ContentStore;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.net.LauncherHttpClient;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+
+import static java.net.HttpURLConnection.*;
+
+/**
+ * Fetches the JARs of one launch into the cache, over the launch's pooled HttpClient.
+ *
+ * JARs with a version attribute use the JNLP version-based download protocol: a cached version is
+ * used without asking the server, a new one is requested with the cached version as current-version-id
+ * so the server can answer with a JARDiff. Servers without the protocol get a plain full fetch.
+ *
+ * Every JAR is downloaded once, however many launches ask for it at the same time: threads of this
+ * launcher join the download in flight, other launchers sharing the cache wait for its CacheLock and
+ * then find it in the refreshed index or the content store.
+ */
+public class JarDownloader {
+
+    private static final int MAX_ATTEMPTS = Integer.getInteger("jnlp.download.attempts", 4);
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    // JNLP version-based download protocol
+    private static final String VERSION_ID_HEADER = "x-java-jnlp-version-id";
+    private static final String JAR_DIFF_TYPE = "application/x-java-archive-diff";
+    private static final String JNLP_ERROR_TYPE = "application/x-java-jnlp-error";
+
+    // Downloads in flight in this launcher, by artifact (see artifact)
+    private static final Map<String, CompletableFuture<Path>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private final HttpClient client;
+    private final Path domainCacheDir;
+
+    public JarDownloader(HttpClient client, String jnlpUrl) {
+        this.client = client;
+        // Generate a cache folder based on the domain
+        this.domainCacheDir = CacheLayout.domainDir(getDomainFromUrl(jnlpUrl));
+    }
+
+    public Path downloadJar(JarResource jar, LongConsumer progress) throws IOException {
+        // The domain folder only holds a view of the JAR, the content lives in the ContentStore
+        Path jarPath = domainCacheDir.resolve(getFileNameFromUrl(jar.getUrl()));
+        String artifact = artifact(jar);
+        CompletableFuture<Path> download = new CompletableFuture<>();
+        CompletableFuture<Path> inFlight = IN_FLIGHT.putIfAbsent(artifact, download);
+        if (inFlight != null) {
+            System.out.println("Waiting for the download of " + jar.getUrl() + " in progress");
+            return viewOf(jar, join(inFlight), jarPath);
+        }
+        long asked = System.currentTimeMillis();
+        // One lock file per artifact, only launchers fetching the very same JAR wait for each other
+        try (CacheLock lock = CacheLock.acquire(lockName(jar.getUrl(), jar.getVersion()))) {
+            Path path = lock.waited() ? fetchedMeanwhile(jar, jarPath, asked) : null;
+            if (path == null) {
+                path = downloadLocked(jar, artifact, jarPath, progress);
+            }
+            download.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(artifact, download);
+        }
+    }
+
+    // The URL and the version asked for, two URLs with the same file name are different artifacts
+    private static String artifact(JarResource jar) {
+        return artifact(jar.getUrl(), jar.getVersion());
+    }
+
+    private static String artifact(String url, String version) {
+        return url + "|" + (version == null ? "" : version);
+    }
+
+    /**
+     * The CacheLock held while the JAR at {@code url} in {@code version} (null or empty for none) is
+     * downloaded, for anything else that changes what is cached for it.
+     */
+    public static String lockName(String url, String version) {
+        return CacheLock.artifact("jar", artifact(url, version == null || version.isEmpty() ? null : version));
+    }
+
+    // The joined download may have been for a launch of another domain, its view is not ours
+    private static Path viewOf(JarResource jar, Path downloaded, Path jarPath) throws IOException {
+        if (downloaded.equals(jarPath)) {
+            return downloaded;
+        }
+        CacheIndex.Entry entry = CacheIndex.get().lookup(jar.getUrl());
+        if (entry == null || !ContentStore.contains(entry.getSha256())) {
+            throw new IOException("Downloaded JAR is no longer in the cache: " + jar.getUrl());
+        }
+        return ContentStore.link(entry.getSha256(), jarPath);
+    }
+
+    // What another launcher sharing the cache fetched while this one waited for the lock, null when nothing
+    private static Path fetchedMeanwhile(JarResource jar, Path jarPath, long asked) throws IOException {
+        CacheIndex.get().refresh();
+        CacheIndex.Entry entry = CacheIndex.get().lookup(jar.getUrl());
+        if (entry == null || entry.getFetchedAt() < asked || !ContentStore.contains(entry.getSha256())
+                || (jar.getSha256() != null && !jar.getSha256().equals(entry.getSha256()))
+                || (jar.getVersion() != null && !satisfies(jar.getVersion(), entry.getVersion()))) {
+            return null;
+        }
+        System.out.println("JAR fetched by another launcher meanwhile: " + jar.getUrl());
+        return ContentStore.link(entry.getSha256(), jarPath);
+    }
+
+    private static Path join(CompletableFuture<Path> download) throws IOException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a download");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private Path downloadLocked(JarResource jar, String artifact, Path jarPath, LongConsumer progress) throws IOException {
+        String jarUrl = jar.getUrl();
+        if (!Files.exists(domainCacheDir)) {
+            Files.createDirectories(domainCacheDir);
+        }
+        Files.createDirectories(CacheLayout.tempDir());
+
+        // Picks up what other launchers sharing the cache saved, one stat when they saved nothing
+        CacheIndex index = CacheIndex.get();
+        index.refresh();
+
+        // Content the server vouches for by hash and that we already hold, from any server, is never fetched again
+        if (ContentStore.contains(jar.getSha256())) {
+            CacheIndex.Entry known = index.lookup(jarUrl);
+            if (known == null || !jar.getSha256().equals(known.getSha256())) {
+                index.put(new CacheIndex.Entry(jarUrl, null, null, Files.size(ContentStore.objectPath(jar.getSha256())),
+                        System.currentTimeMillis(), jar.getSha256()));
+            }
+            System.out.println("JAR found in content store: " + jarUrl);
+            return ContentStore.link(jar.getSha256(), jarPath);
+        }
+
+        CacheIndex.Entry cached = index.lookup(jarUrl);
+        if (cached != null && !ContentStore.contains(cached.getSha256())) {
+            cached = null; // Stored content is gone, validators alone are worthless
+        }
+        if (cached == null && Files.exists(jarPath)) {
+            // Cached before the content store existed, the file time is the best validator we have
+            String sha256 = ContentStore.adopt(jarPath);
+            cached = new CacheIndex.Entry(jarUrl, null, httpDate(Files.getLastModifiedTime(jarPath).toMillis()),
+                    Files.size(jarPath), 0, sha256);
+        }
+
+        if (jar.getVersion() != null) {
+            if (cached != null && isExactVersion(jar.getVersion()) && jar.getVersion().equals(cached.getVersion())) {
+                // A version-id names exactly one build of the JAR, there is nothing to revalidate
+                System.out.println("JAR version " + jar.getVersion() + " found in cache: " + jarUrl);
+                return ContentStore.link(cached.getSha256(), jarPath);
+            }
+            if (cached != null && !cached.hasValidators() && satisfies(jar.getVersion(), cached.getVersion())) {
+                // Nothing to revalidate a range with, the version we have is one the application accepts
+                System.out.println("JAR version " + cached.getVersion() + " found in cache for " + jar.getVersion() + ": " + jarUrl);
+                return ContentStore.link(cached.getSha256(), jarPath);
+            }
+            try {
+                return fetch(jar, artifact, versionedUrl(jar, cached), cached, true, jarPath, progress);
+            } catch (VersionProtocolException e) {
+                System.out.println("Version-based download failed for " + jarUrl + " (" + e.getMessage() + "), fetching the full JAR");
+                if (cached != null && !cached.getVersion().isEmpty()) {
+                    cached = null; // Validators of a versioned response say nothing about the plain URL
+                }
+            }
+        }
+        return fetch(jar, artifact, jarUrl, cached, false, jarPath, progress);
+    }
+
+    private Path fetch(JarResource jar, String artifact, String requestUrl, CacheIndex.Entry cached, boolean versioned,
+                       Path jarPath, LongConsumer progress) throws IOException {
+        // Partial downloads are keyed by URL so a dropped connection, or a launcher restart, can resume them.
+        // The artifact is part of the key: only the holder of its lock writes the file
+        Path partFile = CacheLayout.tempDir().resolve(DigestUtil.sha256Hex(artifact + "|" + requestUrl) + ".part");
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transfer(jar, requestUrl, cached, versioned, jarPath, partFile, progress);
+            } catch (ResumableException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new IOException("Giving up on " + requestUrl + " after " + attempt + " attempts: " + e.getMessage(), e);
+                }
+                System.out.println("Transfer of " + requestUrl + " interrupted (" + e.getMessage() + "), resuming");
+                sleepBeforeRetry(attempt);
+            }
+        }
+    }
+
+    /**
+     * One request for {@code requestUrl}. A versioned request (version-id / current-version-id) is
+     * answered with the full JAR or a JARDiff against the version in {@code cached}, and fails with
+     * VersionProtocolException when the server does not speak the protocol.
+     */
+    private Path transfer(JarResource jar, String requestUrl, CacheIndex.Entry cached, boolean versioned, Path jarPath,
+                          Path partFile, LongConsumer progress) throws IOException {
+        String jarUrl = jar.getUrl();
+        Path metaFile = partFile.resolveSibling(partFile.getFileName() + ".meta");
+        String[] partValidators = readPartValidators(partFile, metaFile);
+        String resumeValidator = partValidators == null ? null : resumeValidator(partValidators);
+        long offset = resumeValidator != null ? Files.size(partFile) : 0;
+
+        // JARs are already compressed, so no Accept-Encoding: ranges then always refer to the file bytes
+        HttpRequest.Builder request = LauncherHttpClient.request(requestUrl);
+
+        // Revalidate what we already have instead of trusting it forever. A version-id never changes,
+        // but a range the cached version satisfies may since have been raised on the server
+        boolean conditional = cached != null && cached.hasValidators()
+                && (!versioned || (!isExactVersion(jar.getVersion()) && satisfies(jar.getVersion(), cached.getVersion())));
+        if (conditional) {
+            if (!cached.getEtag().isEmpty()) {
+                request.header("If-None-Match", cached.getEtag());
+            }
+            if (!cached.getLastModified().isEmpty()) {
+                request.header("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        // If-Range makes the server send the whole file instead of the rest when it changed meanwhile
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            request.header("If-Range", resumeValidator);
+        }
+
+        HttpResponse<InputStream> response = LauncherHttpClient.send(client, request.build());
+        int status = response.statusCode();
+        if (conditional && status == HTTP_NOT_MODIFIED) {
+            LauncherHttpClient.discard(response);
+            deletePart(partFile, metaFile); // Leftover of a newer version that the server no longer serves
+            System.out.println("JAR not modified, using cache: " + jarPath.toString());
+            CacheIndex.get().put(cached.revalidated(System.currentTimeMillis()));
+            return ContentStore.link(cached.getSha256(), jarPath);
+        }
+        if (status == HTTP_RANGE_NOT_SATISFIABLE) {
+            // Range not satisfiable, the partial file is of no use
+            LauncherHttpClient.discard(response);
+            deletePart(partFile, metaFile);
+            throw new ResumableException("server rejected the resume range");
+        }
+        String contentType = response.headers().firstValue("Content-Type").orElse("").toLowerCase(Locale.ROOT);
+        if (versioned && ((status != HTTP_OK && status != HTTP_PARTIAL) || contentType.startsWith(JNLP_ERROR_TYPE))) {
+            // JnlpDownloadServlet answers unknown versions with an error document, plain servers with 404
+            LauncherHttpClient.discard(response);
+            throw new VersionProtocolException("HTTP " + status + (contentType.isEmpty() ? "" : " " + contentType));
+        }
+        boolean jarDiff = versioned && contentType.startsWith(JAR_DIFF_TYPE);
+        if (jarDiff && (cached == null || cached.getSha256() == null)) {
+            LauncherHttpClient.discard(response);
+            throw new VersionProtocolException("JARDiff sent without a current version");
+        }
+        boolean resumed = offset > 0 && status == HTTP_PARTIAL && rangeStartsAt(response, offset);
+        if (!resumed && status != HTTP_OK) {
+            LauncherHttpClient.discard(response);
+            throw new IOException("Server returned HTTP " + status + " for " + requestUrl);
+        }
+
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        if (resumed) {
+            System.out.println("Resuming JAR download at byte " + offset + ": " + requestUrl);
+            // A 206 may omit the validators, the ones of the original response still apply
+            etag = etag != null ? etag : partValidators[0];
+            lastModified = lastModified != null ? lastModified : partValidators[1];
+        } else {
+            System.out.println((jarDiff ? "Downloading JARDiff from: " : "Downloading JAR from: ") + requestUrl);
+            offset = 0;
+            writePartValidators(metaFile, etag, lastModified);
+        }
+
+        MessageDigest digest = DigestUtil.newSha256();
+        long size = offset;
+        InputStream body = LauncherHttpClient.body(response);
+        try {
+            if (resumed) {
+                ChannelTransfer.hash(partFile, offset, digest);
+            }
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+
+        // Download into the part file, the hash decides where it lands in the store
+        try (ReadableByteChannel in = resumableChannel(body, partFile, metaFile);
+             FileChannel out = resumed
+                     ? FileChannel.open(partFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                     : FileChannel.open(partFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            // On cancellation the part file is kept, the next launch picks up where this one stopped
+            size += ChannelTransfer.copy(in, out, digest, progress);
+        }
+
+        long expected = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (expected >= 0 && size != offset + expected) {
+            throw new ResumableException("connection closed after " + size + " bytes");
+        }
+
+        String sha256 = DigestUtil.toHex(digest.digest());
+        Path content = partFile;
+        if (jarDiff) {
+            // The part file holds the diff, the JAR itself is rebuilt from the version we already have
+            content = partFile.resolveSibling(partFile.getFileName() + ".patched");
+            try {
+                JarDiffPatcher.apply(ContentStore.objectPath(cached.getSha256()), partFile, content);
+            } catch (IOException e) {
+                Files.deleteIfExists(content);
+                deletePart(partFile, metaFile);
+                throw new VersionProtocolException("could not apply JARDiff: " + e.getMessage());
+            }
+            deletePart(partFile, metaFile);
+            System.out.println("Patched " + jarUrl + " from version " + cached.getVersion() + " with a " + size + " byte JARDiff");
+            sha256 = DigestUtil.sha256Hex(content);
+            size = Files.size(content);
+        }
+        if (jar.getSha256() != null && !jar.getSha256().equals(sha256)) {
+            Files.deleteIfExists(content);
+            deletePart(partFile, metaFile);
+            throw new IOException("SHA-256 mismatch for " + jarUrl + ": expected " + jar.getSha256() + " but got " + sha256);
+        }
+
+        // Only a complete and verified file is moved (atomically) into the store
+        ContentStore.store(content, sha256);
+        Files.deleteIfExists(metaFile);
+
+        String version = null;
+        if (versioned) {
+            // A range like "2.1+" is resolved by the server, an exact version-id names itself
+            version = response.headers().firstValue(VERSION_ID_HEADER)
+                    .orElse(isExactVersion(jar.getVersion()) ? jar.getVersion() : null);
+        }
+        CacheIndex.get().put(new CacheIndex.Entry(jarUrl, etag, lastModified, size, System.currentTimeMillis(), sha256,
+                version));
+        // Saved while the JAR is still locked, a launcher waiting for it finds it in the index
+        CacheIndex.get().save();
+        System.out.println("Downloaded JAR to: " + jarPath.toString());
+        return ContentStore.link(sha256, jarPath);
+    }
+
+    // href?version-id=..., plus current-version-id when a JARDiff against the cached version is welcome
+    private static String versionedUrl(JarResource jar, CacheIndex.Entry cached) {
+        StringBuilder url = new StringBuilder(jar.getUrl())
+                .append(jar.getUrl().indexOf('?') < 0 ? '?' : '&')
+                .append("version-id=").append(URLEncoder.encode(jar.getVersion(), StandardCharsets.UTF_8));
+        // A patched JAR is never byte-identical to the server's copy, so no diff when a declared hash has to match
+        if (cached != null && !cached.getVersion().isEmpty() && jar.getSha256() == null) {
+            url.append("&current-version-id=").append(URLEncoder.encode(cached.getVersion(), StandardCharsets.UTF_8));
+        }
+        return url.toString();
+    }
+
+    // "1.2.3" is exact, "1.2+", "1.2*", "1.2+&1.3*" and space separated lists are ranges
+    private static boolean isExactVersion(String version) {
+        return version.indexOf('+') < 0 && version.indexOf('*') < 0 && version.indexOf(' ') < 0 && version.indexOf('&') < 0;
+    }
+
+    // Whether versionId is one the JNLP version string asks for: any of its space
+    // separated ranges, each of them one or more of "1.2" (exactly), "1.2*" (prefix) or "1.2+" (or later) joined by '&'
+    private static boolean satisfies(String versionString, String versionId) {
+        if (versionId == null || versionId.isEmpty()) {
+            return false;
+        }
+        for (String range : versionString.trim().split(" +")) {
+            boolean all = true;
+            for (String simple : range.split("&")) {
+                if (simple.endsWith("+")) {
+                    all &= compareVersions(versionId, simple.substring(0, simple.length() - 1), false) >= 0;
+                } else if (simple.endsWith("*")) {
+                    all &= compareVersions(versionId, simple.substring(0, simple.length() - 1), true) == 0;
+                } else {
+                    all &= compareVersions(versionId, simple, false) == 0;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Parts are separated by '.', '-' or '_', missing ones count as "0" and numbers compare as numbers.
+    // Against a prefix only the parts of the prefix count
+    private static int compareVersions(String versionId, String other, boolean prefix) {
+        String[] parts = versionId.split("[._-]");
+        String[] otherParts = other.split("[._-]");
+        int length = prefix ? otherParts.length : Math.max(parts.length, otherParts.length);
+        for (int i = 0; i < length; i++) {
+            String part = i < parts.length ? parts[i] : "0";
+            String otherPart = i < otherParts.length ? otherParts[i] : "0";
+            int result = part.matches("\\d+") && otherPart.matches("\\d+")
+                    ? new BigInteger(part).compareTo(new BigInteger(otherPart))
+                    : part.compareTo(otherPart);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Read errors are worth a resume when the part file can be resumed, anything else is fatal.
+     * Write errors (disk full, ...) pass through the copy loop untouched.
+     */
+    private static ReadableByteChannel resumableChannel(InputStream in, Path partFile, Path metaFile) {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                try {
+                    return channel.read(dst);
+                } catch (InterruptedIOException | ClosedByInterruptException e) {
+                    throw e;
+                } catch (IOException e) {
+                    if (Files.exists(metaFile)) {
+                        throw new ResumableException(e.getMessage());
+                    }
+                    deletePart(partFile, metaFile);
+                    throw e;
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private static boolean rangeStartsAt(HttpResponse<?> response, long offset) {
+        // Content-Range: bytes 1000-4999/5000
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        return contentRange.trim().startsWith("bytes " + offset + "-");
+    }
+
+    // etag|lastModified of the response the part file belongs to, null when it cannot be resumed
+    private static String[] readPartValidators(Path partFile, Path metaFile) throws IOException {
+        if (!Files.exists(partFile) || !Files.exists(metaFile)) {
+            return null;
+        }
+        String[] parts = Files.readString(metaFile, StandardCharsets.UTF_8).trim().split("\\|", -1);
+        return parts.length == 2 ? parts : null;
+    }
+
+    // If-Range only accepts a strong ETag or a date
+    private static String resumeValidator(String[] partValidators) {
+        if (!partValidators[0].isEmpty() && !partValidators[0].startsWith("W/")) {
+            return partValidators[0];
+        }
+        return partValidators[1].isEmpty() ? null : partValidators[1];
+    }
+
+    private static void writePartValidators(Path metaFile, String etag, String lastModified) throws IOException {
+        Files.createDirectories(metaFile.getParent());
+        if ((etag == null || etag.startsWith("W/")) && lastModified == null) {
+            // Without a validator a resumed range could splice two versions together
+            Files.deleteIfExists(metaFile);
+            return;
+        }
+        Files.writeString(metaFile, (etag == null ? "" : etag.replace('|', ' ')) + "|"
+                + (lastModified == null ? "" : lastModified), StandardCharsets.UTF_8);
+    }
+
+    private static void deletePart(Path partFile, Path metaFile) throws IOException {
+        Files.deleteIfExists(partFile);
+        Files.deleteIfExists(metaFile);
+    }
+
+    private static void sleepBeforeRetry(int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(500L * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to resume");
+        }
+    }
+
+    public static String getDomainFromUrl(String urlString) {
+        try {
+            URL url = new URL(urlString);
+            return url.getHost();  // Extract the domain (host) from the URL
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid URL: " + urlString, e);
+        }
+    }
+
+    public static String getFileNameFromUrl(String jarUrl) {
+        // Extract the file name from the URL (e.g., "file.jar" from "http://example.com/file.jar")
+        return jarUrl.substring(jarUrl.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * The server does not support the version-based download protocol for this JAR.
+     */
+    private static class VersionProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        VersionProtocolException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The connection dropped in a way that the part file on disk can be resumed from.
+     */
+    private static class ResumableException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ResumableException(String message) {
+            super(message);
+        }
+    }
+
+    // RFC 1123 date as used by If-Modified-Since
+    private static String httpDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+}
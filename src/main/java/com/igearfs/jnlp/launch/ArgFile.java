@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes JVM options to an argument file that is passed as {@code java @file}. Windows limits a
+ * command line to 32K characters, and a classpath of a few hundred JARs gets there quickly.
+ *
+ * Files are named by their content, so launching the same application again reuses the same file.
+ *
+ * The java launcher reads the file in the platform's native encoding (the ANSI code page on Windows),
+ * not UTF-8. When a path cannot be written in it, the options go on the command line as they are.
+ */
+public class ArgFile {
+
+    private static final long MAX_UNUSED_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final Charset NATIVE_ENCODING = nativeEncoding();
+
+    /**
+     * The java command line arguments for {@code arguments}: "@file", or the arguments themselves when
+     * the native encoding cannot hold them.
+     */
+    public static List<String> commandLine(List<String> arguments) throws IOException {
+        Path file = write(arguments);
+        return file == null ? arguments : List.of("@" + file);
+    }
+
+    // The argument file, null when an argument cannot be encoded
+    private static Path write(List<String> arguments) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String argument : arguments) {
+            content.append(quote(argument)).append('\n');
+        }
+        byte[] bytes;
+        try {
+            ByteBuffer encoded = NATIVE_ENCODING.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .encode(CharBuffer.wrap(content));
+            bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+        } catch (CharacterCodingException e) {
+            System.out.println("JVM options do not fit the " + NATIVE_ENCODING + " encoding, passing them on the command line");
+            return null;
+        }
+
+        Path dir = CacheLayout.launchDir();
+        Path file = dir.resolve("args-" + DigestUtil.toHex(DigestUtil.newSha256().digest(bytes)).substring(0, 16) + ".txt");
+        if (Files.exists(file)) {
+            // Marks the file as in use for the clean up below
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return file.toAbsolutePath();
+        }
+
+        Files.createDirectories(dir);
+        deleteUnused(dir);
+        Path tempFile = Files.createTempFile(dir, "args", ".tmp");
+        try {
+            Files.write(tempFile, bytes);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return file.toAbsolutePath();
+    }
+
+    // Inside quotes the java launcher treats '\' as an escape character, so Windows paths need doubled backslashes
+    private static String quote(String argument) {
+        return "\"" + argument.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    // native.encoding exists since Java 17; file.encoding may have been set to UTF-8 for the launcher itself
+    private static Charset nativeEncoding() {
+        try {
+            return Charset.forName(System.getProperty("native.encoding", Charset.defaultCharset().name()));
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    private static void deleteUnused(Path dir) {
+        long cutoff = System.currentTimeMillis() - MAX_UNUSED_MILLIS;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "args-*.txt")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Single-class JARs that put a launcher class (LazyPartClassLoader, PooledJvmMain) on the classpath
+ * of an application JVM, kept under jnlp_cache/_launch.
+ */
+public class BootstrapJar {
+
+    /**
+     * The JAR holding {@code type}, named by the class content so a launcher update never reuses an outdated copy.
+     */
+    public static Path of(Class<?> type, String prefix) throws IOException {
+        String entryName = type.getName().replace('.', '/') + ".class";
+        byte[] classBytes;
+        try (InputStream in = type.getClassLoader().getResourceAsStream(entryName)) {
+            if (in == null) {
+                throw new IOException("Missing " + entryName);
+            }
+            classBytes = in.readAllBytes();
+        }
+
+        Path dir = CacheLayout.launchDir();
+        Path jar = dir.resolve(prefix + "-" + DigestUtil.toHex(DigestUtil.newSha256().digest(classBytes)).substring(0, 16) + ".jar");
+        if (Files.exists(jar)) {
+            return jar.toAbsolutePath();
+        }
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, prefix, ".tmp");
+        try {
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(temp))) {
+                out.putNextEntry(new JarEntry(entryName));
+                out.write(classBytes);
+                out.closeEntry();
+            }
+            Files.move(temp, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return jar.toAbsolutePath();
+    }
+}
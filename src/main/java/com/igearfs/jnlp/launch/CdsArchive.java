@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dynamic class data sharing (AppCDS) archive of one launched classpath, kept under jnlp_cache/_cds.
+ *
+ * The first launch records the classes it loaded with -XX:ArchiveClassesAtExit, later launches map
+ * them with -XX:SharedArchiveFile instead of loading and verifying them again. Several clients
+ * started from the same archive also share those pages in memory.
+ *
+ * Files are named {@code <classpath>-<state>.jsa}: the first hash covers the JVM and the classpath
+ * as written, the second the JVM version and the size and time of every JAR. A changed JAR therefore
+ * records a new archive, which replaces the older ones of the same classpath once it is complete.
+ * Turn it off with -Djnlp.cds=false.
+ */
+public class CdsArchive {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("jnlp.cds", "true"));
+    private static final String EXTENSION = ".jsa";
+
+    // Archives recorded by children of this launcher, the marker files cover other launchers
+    private static final Set<String> RECORDING = ConcurrentHashMap.newKeySet();
+
+    private final String classpathKey;
+    private final String name;
+    private final Path archive;
+    private final Path partial; // Written by the recording JVM when it exits
+    private final Path marker;  // Pid of the recording JVM
+    private boolean recording;
+
+    private CdsArchive(String classpathKey, String stateKey) {
+        this.classpathKey = classpathKey;
+        this.name = classpathKey + "-" + stateKey;
+        Path dir = CacheLayout.cdsDir();
+        this.archive = dir.resolve(name + EXTENSION);
+        this.partial = dir.resolve(name + EXTENSION + ".part");
+        this.marker = dir.resolve(name + ".recording");
+    }
+
+    /**
+     * The archive for a -cp value (wildcards allowed) and module path, or null when CDS is off or the
+     * classpath holds something other than JAR files (a non-empty directory makes recording fail).
+     */
+    public static CdsArchive forLaunch(String classpath, String modulePath) {
+        if (!ENABLED) {
+            return null;
+        }
+        try {
+            List<Path> jars = new ArrayList<>();
+            for (String entry : classpath.split(File.pathSeparator)) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                if (entry.endsWith("*")) {
+                    jars.addAll(jarsIn(Paths.get(entry.substring(0, entry.length() - 1))));
+                } else if (Files.isRegularFile(Paths.get(entry))) {
+                    jars.add(Paths.get(entry));
+                } else {
+                    System.out.println("Not using class data sharing, " + entry + " is not a JAR file");
+                    return null;
+                }
+            }
+            jars.addAll(jarsIn(Paths.get(modulePath)));
+
+            StringBuilder state = new StringBuilder(System.getProperty("java.vm.version"));
+            for (Path jar : jars) {
+                state.append('|').append(jar.toAbsolutePath()).append('|').append(Files.size(jar))
+                        .append('|').append(Files.getLastModifiedTime(jar).toMillis());
+            }
+            String classpathKey = DigestUtil.sha256Hex(System.getProperty("java.home") + "|" + classpath + "|" + modulePath);
+            return new CdsArchive(classpathKey.substring(0, 16), DigestUtil.sha256Hex(state.toString()).substring(0, 16));
+        } catch (IOException e) {
+            System.err.println("Not using class data sharing: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Options that map the archive, or record it when there is none yet. Empty while another
+     * launch of the same classpath is still recording.
+     */
+    public List<String> jvmOptions() {
+        try {
+            Files.createDirectories(archive.getParent());
+            if (RECORDING.contains(name) || isRecordedElsewhere()) {
+                return Collections.emptyList();
+            }
+            if (Files.exists(archive)) {
+                return Collections.singletonList("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+            }
+            if (!RECORDING.add(name)) {
+                return Collections.emptyList();
+            }
+            recording = true;
+            Files.deleteIfExists(partial);
+            System.out.println("Recording class data sharing archive " + archive.getFileName());
+            return Collections.singletonList("-XX:ArchiveClassesAtExit=" + partial.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Not using class data sharing: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Hands the started JVM to the archive. A recording JVM writes the archive when it exits,
+     * which is when it gets moved into place.
+     */
+    public void started(Process process) {
+        if (!recording) {
+            return;
+        }
+        try {
+            Files.writeString(marker, String.valueOf(process.pid()));
+        } catch (IOException e) {
+            System.err.println("Could not write " + marker + ": " + e.getMessage());
+        }
+        process.onExit().thenRun(() -> {
+            complete();
+            RECORDING.remove(name);
+        });
+    }
+
+    /**
+     * For a JVM that could not be started: a recording it was to make is left to the next launch.
+     */
+    public void abandon() {
+        if (recording) {
+            recording = false;
+            RECORDING.remove(name);
+        }
+    }
+
+    // A marker whose process is gone belongs to a recording nobody completed, e.g. because the launcher exited first
+    private boolean isRecordedElsewhere() throws IOException {
+        if (!Files.exists(marker)) {
+            return false;
+        }
+        try {
+            long pid = Long.parseLong(Files.readString(marker).trim());
+            if (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                return true;
+            }
+        } catch (NumberFormatException e) {
+            // Unreadable marker, treat the recording as finished
+        }
+        complete();
+        return false;
+    }
+
+    private void complete() {
+        try {
+            Files.deleteIfExists(marker);
+            if (Files.exists(partial) && Files.size(partial) > 0) {
+                Files.move(partial, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                System.out.println("Class data sharing archive ready: " + archive.getFileName() + " ("
+                        + Files.size(archive) / 1024 + " KB)");
+                deleteOutdated();
+            } else {
+                // The JVM was killed, or could not dump (it says why on its own output)
+                Files.deleteIfExists(partial);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not complete " + archive + ": " + e.getMessage());
+        }
+    }
+
+    // Archives of the same classpath recorded before one of its JARs changed
+    private void deleteOutdated() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(archive.getParent(), classpathKey + "-*" + EXTENSION)) {
+            for (Path file : files) {
+                if (!file.equals(archive)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Still mapped by a running client on Windows, the next recording tries again
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up " + archive.getParent() + ": " + e.getMessage());
+        }
+    }
+
+    // The java launcher expands "dir/*" to the JAR files in dir
+    private static List<Path> jarsIn(Path dir) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return jars;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{jar,JAR}")) {
+            for (Path file : files) {
+                jars.add(file);
+            }
+        }
+        Collections.sort(jars);
+        return jars;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One application JVM started by the launcher, as tracked by ProcessSupervisor.
+ * CPU time and resident memory are the values of the last ProcessSupervisor.snapshot().
+ */
+public class ChildProcess {
+
+    private static final int MAX_OUTPUT_LINES = 200;
+
+    private final String entryId;
+    private final String entryName;
+    private final Process process;
+    private final Instant startTime;
+    private final Deque<String> recentOutput = new ArrayDeque<>(); // Guarded by itself
+
+    private volatile Instant endTime;
+    private volatile Integer exitCode;
+    private volatile Duration cpuTime;
+    private volatile long residentBytes = -1;
+
+    ChildProcess(String entryId, String entryName, Process process, Instant startTime) {
+        this.entryId = entryId;
+        this.entryName = entryName;
+        this.process = process;
+        this.startTime = startTime;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public String getEntryName() {
+        return entryName;
+    }
+
+    public long getPid() {
+        return process.pid();
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    // Until now, or until the process exited
+    public Duration getUptime() {
+        Instant end = endTime;
+        return Duration.between(startTime, end != null ? end : Instant.now());
+    }
+
+    // Null when the platform does not report it
+    public Duration getCpuTime() {
+        return cpuTime;
+    }
+
+    // -1 when unknown
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public boolean isAlive() {
+        return exitCode == null;
+    }
+
+    // Runs inside the launcher's JVM, so the pid is the launcher's and memory is not its own
+    public boolean isInProcess() {
+        return process instanceof InProcessApp;
+    }
+
+    // Null while the process runs
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    // The last lines the application wrote to stdout and stderr
+    public List<String> getRecentOutput() {
+        synchronized (recentOutput) {
+            return new ArrayList<>(recentOutput);
+        }
+    }
+
+    public void stop() {
+        process.destroy();
+    }
+
+    // Completes once the process has exited
+    public CompletableFuture<Process> onExit() {
+        return process.onExit();
+    }
+
+    Process getProcess() {
+        return process;
+    }
+
+    void addOutput(String line) {
+        synchronized (recentOutput) {
+            if (recentOutput.size() == MAX_OUTPUT_LINES) {
+                recentOutput.removeFirst();
+            }
+            recentOutput.addLast(line);
+        }
+    }
+
+    void sampled(Duration cpuTime, long residentBytes) {
+        if (cpuTime != null) {
+            this.cpuTime = cpuTime;
+        }
+        this.residentBytes = residentBytes;
+    }
+
+    void exited(int exitCode) {
+        this.endTime = Instant.now();
+        this.exitCode = exitCode;
+        this.residentBytes = -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ChildProcess{" +
+                "entry='" + entryName + '\'' +
+                ", pid=" + getPid() +
+                ", uptime=" + getUptime().toSeconds() + "s" +
+                ", cpu=" + (cpuTime == null ? "?" : cpuTime.toMillis() + "ms") +
+                ", rss=" + (residentBytes < 0 ? "?" : residentBytes / (1024 * 1024) + "MB") +
+                ", exitCode=" + exitCode +
+                '}';
+    }
+}
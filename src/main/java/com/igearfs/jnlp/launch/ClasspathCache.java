@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which JARs live below a local library folder (like the bundled 4.5.2 tree) so it
+ * is not walked on every launch.
+ *
+ * The manifest records the modification time of every directory in the tree. Adding, removing or
+ * renaming a JAR changes the time of its directory, so checking those times (one stat per directory,
+ * no listing) tells whether the remembered list still holds.
+ */
+public class ClasspathCache {
+
+    private static final Map<Path, Manifest> MEMORY = new ConcurrentHashMap<>();
+
+    /**
+     * Absolute paths of every JAR below {@code root}, sorted by path. Empty when the folder does not exist.
+     */
+    public static List<String> jarsUnder(Path root) {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        if (!Files.isDirectory(absoluteRoot)) {
+            return Collections.emptyList();
+        }
+
+        Manifest manifest = MEMORY.get(absoluteRoot);
+        if (manifest == null) {
+            manifest = read(file(absoluteRoot));
+        }
+        if (manifest == null || !manifest.isCurrent()) {
+            try {
+                manifest = scan(absoluteRoot);
+                write(file(absoluteRoot), manifest);
+            } catch (IOException e) {
+                System.err.println("Could not scan " + absoluteRoot + ": " + e.getMessage());
+                return Collections.emptyList();
+            }
+        }
+        MEMORY.put(absoluteRoot, manifest);
+        return manifest.jars;
+    }
+
+    private static Manifest scan(Path root) throws IOException {
+        List<String[]> directories = new ArrayList<>();
+        List<String> jars = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                directories.add(new String[]{dir.toString(), String.valueOf(attributes.lastModifiedTime().toMillis())});
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".jar")) {
+                    jars.add(file.toString());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        // Directory listings come in no particular order, the classpath must not depend on it
+        Collections.sort(jars);
+        System.out.println("Scanned " + root + ": " + jars.size() + " JARs");
+        return new Manifest(directories, jars);
+    }
+
+    private static Path file(Path root) {
+        return CacheLayout.launchDir().resolve("classpath-" + DigestUtil.sha256Hex(root.toString()).substring(0, 16) + ".txt");
+    }
+
+    private static Manifest read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        List<String[]> directories = new ArrayList<>();
+        List<String> jars = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                // dir|mtime|path and jar|path, the path goes last because it may contain '|'
+                String[] fields = line.split("\\|", 2);
+                String[] dirFields = fields.length == 2 ? fields[1].split("\\|", 2) : null;
+                if (fields[0].equals("dir") && dirFields != null && dirFields.length == 2) {
+                    directories.add(new String[]{dirFields[1], dirFields[0]});
+                } else if (fields[0].equals("jar") && fields.length == 2) {
+                    jars.add(fields[1]);
+                } else {
+                    return null; // Damaged, the folders are scanned again rather than launching without a library
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new Manifest(directories, jars);
+    }
+
+    private static void write(Path file, Manifest manifest) {
+        List<String> lines = new ArrayList<>();
+        for (String[] directory : manifest.directories) {
+            lines.add("dir|" + directory[1] + "|" + directory[0]);
+        }
+        for (String jar : manifest.jars) {
+            lines.add("jar|" + jar);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save classpath manifest " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static class Manifest {
+        private final List<String[]> directories; // path, mtime in millis
+        private final List<String> jars;
+
+        Manifest(List<String[]> directories, List<String> jars) {
+            this.directories = directories;
+            this.jars = Collections.unmodifiableList(jars);
+        }
+
+        boolean isCurrent() {
+            if (directories.isEmpty()) {
+                return false;
+            }
+            try {
+                for (String[] directory : directories) {
+                    if (Files.getLastModifiedTime(Paths.get(directory[0])).toMillis() != Long.parseLong(directory[1])) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (IOException | RuntimeException e) {
+                return false; // A directory vanished
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.model.JnlpDescriptor;
+import com.igearfs.jnlp.model.JvmProfile;
+import com.igearfs.jnlp.model.PackageResource;
+import com.igearfs.jnlp.net.LauncherHttpClient;
+import com.igearfs.jnlp.util.DigestUtil;
+import com.igearfs.jnlp.util.JnlpParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fetches JNLP descriptors and keeps them parsed, in memory and under jnlp_cache/_descriptors.
+ *
+ * The fetch is conditional (validators live in the CacheIndex like those of JARs), and a parsed
+ * descriptor is stored under its URL and the hash of its content. A 304, or a 200 with content we
+ * have seen before, therefore never parses anything.
+ */
+public class DescriptorCache {
+
+    // Bump whenever JnlpDescriptor gains a field or parsing changes, older files are then parsed again
+    private static final String FORMAT = "5";
+
+    private static final Map<String, JnlpDescriptor> MEMORY = new ConcurrentHashMap<>(); // By URL
+
+    public static JnlpDescriptor load(HttpClient client, String url) throws IOException {
+        try {
+            return loadAsync(client, url).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not load " + url, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + url);
+        }
+    }
+
+    /**
+     * Fetches a descriptor without blocking, so several of them can be on the wire at once.
+     * Failures complete the future with an UncheckedIOException.
+     */
+    public static CompletableFuture<JnlpDescriptor> loadAsync(HttpClient client, String url) {
+        CacheIndex.Entry cached = CacheIndex.get().lookup(url);
+        JnlpDescriptor known = cached == null ? null : cachedDescriptor(url, cached.getSha256());
+
+        HttpRequest.Builder request = LauncherHttpClient.compressedRequest(url);
+        // Only worth revalidating when the parsed descriptor is still around
+        if (known != null && cached.hasValidators()) {
+            if (!cached.getEtag().isEmpty()) {
+                request.header("If-None-Match", cached.getEtag());
+            }
+            if (!cached.getLastModified().isEmpty()) {
+                request.header("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return LauncherHttpClient.sendAsync(client, request.build()).thenApply(response -> {
+            try {
+                return receive(url, response, known, cached);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static JnlpDescriptor receive(String url, HttpResponse<InputStream> response, JnlpDescriptor known,
+                                          CacheIndex.Entry cached) throws IOException {
+        int status = response.statusCode();
+        if (known != null && status == 304) {
+            LauncherHttpClient.discard(response);
+            System.out.println("JNLP not modified, using cached descriptor: " + url);
+            CacheIndex.get().put(cached.revalidated(System.currentTimeMillis()));
+            return known;
+        }
+        if (status != 200) {
+            LauncherHttpClient.discard(response);
+            throw new IOException("Server returned HTTP " + status + " for " + url);
+        }
+
+        byte[] content;
+        try (InputStream in = LauncherHttpClient.body(response)) {
+            content = in.readAllBytes();
+        }
+        String sha256 = DigestUtil.toHex(DigestUtil.newSha256().digest(content));
+        JnlpDescriptor descriptor = cachedDescriptor(url, sha256);
+        if (descriptor == null) {
+            descriptor = JnlpParser.parse(url, content, sha256);
+            MEMORY.put(url, descriptor);
+            write(descriptor);
+        }
+        CacheIndex.get().put(new CacheIndex.Entry(url, response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null), content.length,
+                System.currentTimeMillis(), sha256));
+        return descriptor;
+    }
+
+    private static JnlpDescriptor cachedDescriptor(String url, String sha256) {
+        if (sha256 == null) {
+            return null;
+        }
+        JnlpDescriptor descriptor = MEMORY.get(url);
+        if (descriptor != null && sha256.equals(descriptor.getSha256())) {
+            return descriptor;
+        }
+        descriptor = read(url, sha256);
+        if (descriptor != null) {
+            MEMORY.put(url, descriptor);
+        }
+        return descriptor;
+    }
+
+    // The same bytes resolve to different URLs on different servers, so the URL is part of the key,
+    // and to different resources on different platforms, so is the platform
+    private static Path file(String url, String sha256) {
+        return CacheLayout.descriptorsDir().resolve(
+                DigestUtil.sha256Hex(url + "|" + sha256 + "|" + JnlpParser.platform()) + ".txt");
+    }
+
+    private static void write(JnlpDescriptor descriptor) {
+        List<String> lines = new ArrayList<>();
+        lines.add("format|" + FORMAT);
+        lines.add("url|" + escape(descriptor.getUrl()));
+        lines.add("title|" + escape(descriptor.getTitle()));
+        lines.add("main-class|" + escape(descriptor.getMainClass()));
+        lines.add("server-version|" + escape(descriptor.getServerVersion()));
+        lines.add("jvm|" + escape(descriptor.getJvmProfile().encode()));
+        for (String argument : descriptor.getArguments()) {
+            lines.add("argument|" + escape(argument));
+        }
+        for (JarResource jar : descriptor.getJars()) {
+            lines.add("jar|" + escape(jar.getUrl()) + "|" + escape(jar.getSha256()) + "|" + escape(jar.getVersion())
+                    + "|" + jar.isLazy() + "|" + escape(jar.getPart()) + "|" + jar.isNativeLib());
+        }
+        for (PackageResource packageResource : descriptor.getPackages()) {
+            lines.add("package|" + escape(packageResource.getName()) + "|" + escape(packageResource.getPart())
+                    + "|" + packageResource.isRecursive());
+        }
+        for (String extension : descriptor.getExtensions()) {
+            lines.add("extension|" + escape(extension));
+        }
+
+        Path file = file(descriptor.getUrl(), descriptor.getSha256());
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The next launch simply parses again
+            System.err.println("Could not cache descriptor " + descriptor.getUrl() + ": " + e.getMessage());
+        }
+    }
+
+    private static JnlpDescriptor read(String url, String sha256) {
+        Path file = file(url, sha256);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String title = null;
+        String mainClass = null;
+        String serverVersion = null;
+        JvmProfile jvmProfile = null;
+        List<String> arguments = new ArrayList<>();
+        List<JarResource> jars = new ArrayList<>();
+        List<PackageResource> packages = new ArrayList<>();
+        List<String> extensions = new ArrayList<>();
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals("format|" + FORMAT)) {
+                return null;
+            }
+            for (String line : lines) {
+                String[] fields = line.split("\\|", -1);
+                switch (fields[0]) {
+                    case "title":
+                        title = unescape(fields[1]);
+                        break;
+                    case "main-class":
+                        mainClass = unescape(fields[1]);
+                        break;
+                    case "server-version":
+                        serverVersion = unescape(fields[1]);
+                        break;
+                    case "jvm":
+                        jvmProfile = JvmProfile.decode(unescape(fields[1]));
+                        break;
+                    case "argument":
+                        arguments.add(fields[1].isEmpty() ? "" : unescape(fields[1]));
+                        break;
+                    case "jar":
+                        jars.add(new JarResource(unescape(fields[1]), unescape(fields[2]), unescape(fields[3]),
+                                Boolean.parseBoolean(fields[4]), unescape(fields[5]), Boolean.parseBoolean(fields[6])));
+                        break;
+                    case "package":
+                        packages.add(new PackageResource(unescape(fields[1]), unescape(fields[2]), Boolean.parseBoolean(fields[3])));
+                        break;
+                    case "extension":
+                        extensions.add(unescape(fields[1]));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable cached descriptor " + file + ": " + e.getMessage());
+            return null;
+        }
+        return new JnlpDescriptor(url, sha256, title, mainClass, arguments, jars, packages, extensions, jvmProfile, serverVersion);
+    }
+
+    // Fields are pipe delimited and one per line, null is written as an empty field
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("%", "%25").replace("|", "%7C").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    private static String unescape(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length()) {
+                result.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import java.security.Permission;
+
+/**
+ * Turns System.exit and Runtime.halt of an application running inside the launcher's JVM into the
+ * end of that application only, see InProcessApp.
+ *
+ * Java has no other hook for it than a SecurityManager. This one allows everything and only looks at
+ * exits: when a class of an in-process application is on the stack, the exit is refused and the
+ * application is stopped with the status it asked for. InProcessApp installs it when an application
+ * starts inside and removes it when the last one ended. Java 17 warns once when it is installed; later
+ * versions refuse it unless the launcher runs with -Djava.security.manager=allow, and then no
+ * application runs inside the launcher.
+ */
+@SuppressWarnings("removal")
+class ExitGuard extends SecurityManager {
+
+    private static boolean installed; // Guarded by the class
+
+    /**
+     * Installs the guard once. Returns false when it cannot be installed, or when another security
+     * manager is in place that must not be replaced.
+     */
+    static synchronized boolean install() {
+        if (installed) {
+            return true;
+        }
+        if (System.getSecurityManager() != null) {
+            return false;
+        }
+        try {
+            System.setSecurityManager(new ExitGuard());
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+        installed = true;
+        return true;
+    }
+
+    /**
+     * Removes the guard again, so the launcher runs without a security manager.
+     */
+    static synchronized void uninstall() {
+        if (!installed) {
+            return;
+        }
+        if (System.getSecurityManager() instanceof ExitGuard) {
+            System.setSecurityManager(null);
+        }
+        installed = false;
+    }
+
+    @Override
+    public void checkPermission(Permission permission) {
+        // Everything is allowed, the launcher did not run with a security manager before
+    }
+
+    @Override
+    public void checkPermission(Permission permission, Object context) {
+        // Everything is allowed
+    }
+
+    @Override
+    public void checkExit(int status) {
+        InProcessApp app = InProcessApp.callerOf(getClassContext());
+        if (app != null) {
+            app.exitRequested(status);
+            throw new SecurityException("System.exit(" + status + ") only ends " + app.getName() + ", not the launcher");
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.model.LaunchEntry;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An application running inside the launcher's JVM instead of a JVM of its own. It looks like a
+ * Process to the rest of the launcher, so ProcessSupervisor and the monitor window track it like any
+ * other child.
+ *
+ * Only a main class extending JavaFX's Application runs inside: it goes through init, start and stop
+ * on the launcher's toolkit and ends when its primary stage is closed. Any other main class (Swing,
+ * AWT, console) may keep running on threads that are not its own, like the AWT event dispatch thread,
+ * so nothing could tell when it ended and its JARs were safe to close; it runs in a separate JVM.
+ * The application gets its own IsolatedClassLoader and ThreadGroup. Stopping hides the primary stage
+ * and interrupts the application's threads, then the class loader is closed so its classes can be
+ * unloaded. System.exit ends only the application that called it, see ExitGuard; the guard is in
+ * place only while an application runs inside. The entry dialog only offers this mode when the saved
+ * launch plan says the main class is a JavaFX application.
+ *
+ * Everything shares one JVM: heap, GC and JVM flags of the entry do not apply and output goes
+ * straight to the launcher's console. Windows an application opens besides its primary stage are
+ * not tracked.
+ */
+public class InProcessApp extends Process {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Map<ClassLoader, InProcessApp> RUNNING = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final IsolatedClassLoader loader;
+    private final ThreadGroup threadGroup;
+    private final Instant startTime = Instant.now();
+    private final CompletableFuture<Process> exit = new CompletableFuture<>();
+    private final Map<Long, Long> cpuByThread = new HashMap<>(); // Last CPU nanos seen per thread, guarded by itself
+    private final CountDownLatch primaryStageHidden = new CountDownLatch(1);
+
+    private volatile Integer exitCode;
+    private volatile Integer requestedExit; // Status the application passed to System.exit
+    private volatile Stage primaryStage; // JavaFX applications only
+
+    private InProcessApp(String name, IsolatedClassLoader loader) {
+        this.name = name;
+        this.loader = loader;
+        this.threadGroup = new ThreadGroup("app-" + name);
+    }
+
+    /**
+     * Starts the application on a thread of its own and registers it with ProcessSupervisor. Returns
+     * null when it cannot run inside the launcher and needs a JVM of its own.
+     */
+    public static ChildProcess start(LaunchEntry entry, List<String> classpath, List<Path> nativeDirs, String mainClass,
+                                     List<String> appArgs) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String path : classpath) {
+            urls.add(Paths.get(path).toUri().toURL());
+        }
+        IsolatedClassLoader loader = new IsolatedClassLoader(entry.getName(), urls.toArray(new URL[0]), nativeDirs);
+        if (!isJavaFxApplication(loader, mainClass)) {
+            loader.close();
+            System.out.println(entry.getName() + " is not a JavaFX application, launching it in a separate JVM");
+            return null;
+        }
+        InProcessApp app = new InProcessApp(entry.getName(), loader);
+        if (!register(app)) {
+            loader.close();
+            System.out.println("System.exit cannot be intercepted in this JVM, launching " + entry.getName()
+                    + " in a separate JVM");
+            return null;
+        }
+
+        Thread main = new Thread(app.threadGroup, () -> app.run(mainClass, appArgs), entry.getName() + "-main");
+        main.setContextClassLoader(app.loader);
+        System.out.println("Launching " + entry.getName() + " inside the launcher JVM (" + classpath.size() + " JARs)");
+        ChildProcess child = ProcessSupervisor.register(entry.getId(), entry.getName(), app, app.startTime);
+        main.start();
+        return child;
+    }
+
+    /**
+     * Whether {@code mainClass} on {@code classpath} extends JavaFX's Application, the only kind of
+     * application that can run inside the launcher. Saved with the launch plan, so the entry dialog
+     * only offers the launcher JVM to applications that can use it.
+     */
+    public static boolean isJavaFxApplication(List<String> classpath, String mainClass) {
+        List<URL> urls = new ArrayList<>();
+        try {
+            for (String path : classpath) {
+                urls.add(Paths.get(path).toUri().toURL());
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        try (IsolatedClassLoader loader = new IsolatedClassLoader(mainClass, urls.toArray(new URL[0]), List.of())) {
+            return isJavaFxApplication(loader, mainClass);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Loaded without initializing it, its static initializers run on the application's own thread
+    private static boolean isJavaFxApplication(ClassLoader loader, String mainClass) {
+        try {
+            return Application.class.isAssignableFrom(Class.forName(mainClass, false, loader));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false; // The separate JVM reports it the way a cold start does
+        }
+    }
+
+    // The ExitGuard is only installed while an application runs inside, it sits in every permission check
+    private static synchronized boolean register(InProcessApp app) {
+        if (!ExitGuard.install()) {
+            return false;
+        }
+        RUNNING.put(app.loader, app);
+        return true;
+    }
+
+    private static synchronized void unregister(InProcessApp app) {
+        RUNNING.remove(app.loader);
+        if (RUNNING.isEmpty()) {
+            ExitGuard.uninstall();
+        }
+    }
+
+    /**
+     * The in-process application that has a class among {@code stack}, null when none has.
+     */
+    static InProcessApp callerOf(Class<?>[] stack) {
+        for (Class<?> type : stack) {
+            // Class loaders an application creates itself have its IsolatedClassLoader as an ancestor
+            for (ClassLoader loader = type.getClassLoader(); loader != null; loader = loader.getParent()) {
+                InProcessApp app = RUNNING.get(loader);
+                if (app != null) {
+                    return app;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Called instead of ending the JVM, the application ends with the status it asked for
+    void exitRequested(int status) {
+        if (requestedExit == null) {
+            requestedExit = status;
+        }
+        destroy();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    private void run(String mainClass, List<String> appArgs) {
+        int code = 0;
+        try {
+            Class<?> type = Class.forName(mainClass, true, loader);
+            if (Application.class.isAssignableFrom(type)) {
+                runApplication(type.asSubclass(Application.class), appArgs);
+            } else {
+                Method main = type.getMethod("main", String[].class);
+                main.invoke(null, (Object) appArgs.toArray(new String[0]));
+            }
+        } catch (InvocationTargetException | ExecutionException e) {
+            System.err.println(name + " failed: " + e.getCause());
+            e.getCause().printStackTrace();
+            code = 1;
+        } catch (Exception | LinkageError e) {
+            System.err.println(name + " could not be started: " + e);
+            code = 1;
+        }
+        awaitThreads();
+        Integer requested = requestedExit;
+        exitCode = requested != null ? requested : code;
+        unregister(this);
+        try {
+            loader.close();
+        } catch (IOException e) {
+            System.err.println("Could not close the class loader of " + name + ": " + e.getMessage());
+        }
+        exit.complete(this);
+    }
+
+    // The life cycle Application.launch would go through, on the toolkit the launcher already runs
+    private void runApplication(Class<? extends Application> type, List<String> appArgs) throws Exception {
+        Application application = onFxThread(() -> type.getConstructor().newInstance());
+        registerParameters(application, appArgs);
+        application.init();
+        try {
+            onFxThread(() -> {
+                Stage stage = new Stage();
+                stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> primaryStageHidden.countDown());
+                primaryStage = stage;
+                application.start(stage);
+                return null;
+            });
+        } catch (ExecutionException e) {
+            onFxThread(() -> {
+                primaryStage.hide();
+                return null;
+            });
+            throw e;
+        }
+        awaitUninterruptibly(primaryStageHidden);
+        onFxThread(() -> {
+            application.stop();
+            return null;
+        });
+    }
+
+    // getParameters() is filled in by Application.launch through an internal class, do the same when it is there
+    private void registerParameters(Application application, List<String> appArgs) {
+        try {
+            Class<?> parametersType = Class.forName("com.sun.javafx.application.ParametersImpl");
+            Object parameters = parametersType.getConstructor(List.class).newInstance(appArgs);
+            parametersType.getMethod("registerParameters", Application.class, Application.Parameters.class)
+                    .invoke(null, application, parameters);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println(name + " will not see its arguments through getParameters(): " + e);
+        }
+    }
+
+    // Runs a task on the JavaFX thread, with the application's classes as context, and waits for it
+    private <T> T onFxThread(Callable<T> task) throws ExecutionException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable runnable = () -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        };
+        try {
+            Platform.startup(runnable); // Launched from the command line, nothing started the toolkit yet
+        } catch (IllegalStateException alreadyRunning) {
+            Platform.runLater(runnable);
+        }
+        while (true) {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                // Being stopped, the task still has to finish
+            }
+        }
+    }
+
+    // Like the JVM, an application ends once its last non-daemon thread has
+    private void awaitThreads() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            Thread next = null;
+            for (Thread thread : threads()) {
+                if (thread != self && thread.isAlive() && !thread.isDaemon()) {
+                    next = thread;
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            try {
+                next.join();
+            } catch (InterruptedException e) {
+                // Being stopped, keep waiting for the threads that were interrupted
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Being stopped, the primary stage is about to be hidden
+            }
+        }
+    }
+
+    private List<Thread> threads() {
+        Thread[] threads = new Thread[threadGroup.activeCount() + 16];
+        int count = threadGroup.enumerate(threads, true);
+        return Arrays.asList(threads).subList(0, count);
+    }
+
+    // CPU time of the application's own threads, the JavaFX thread it shares is not counted
+    private Duration cpuTime() {
+        if (!THREADS.isThreadCpuTimeSupported()) {
+            return null;
+        }
+        synchronized (cpuByThread) {
+            for (Thread thread : threads()) {
+                long nanos = THREADS.getThreadCpuTime(thread.getId());
+                if (nanos >= 0) {
+                    cpuByThread.put(thread.getId(), nanos);
+                }
+            }
+            long total = 0;
+            for (long nanos : cpuByThread.values()) {
+                total += nanos;
+            }
+            return Duration.ofNanos(total);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (!isAlive()) {
+            return;
+        }
+        Stage stage = primaryStage;
+        if (stage != null) {
+            Platform.runLater(stage::hide); // Same as the user closing it
+        }
+        threadGroup.interrupt();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return exitCode == null;
+    }
+
+    @Override
+    public int exitValue() {
+        Integer code = exitCode;
+        if (code == null) {
+            throw new IllegalThreadStateException(name + " is still running");
+        }
+        return code;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            exit.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return exitCode;
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return exit.copy();
+    }
+
+    // The launcher's own pid, there is no other process
+    @Override
+    public long pid() {
+        return ProcessHandle.current().pid();
+    }
+
+    @Override
+    public ProcessHandle.Info info() {
+        Duration cpuTime = cpuTime();
+        return new ProcessHandle.Info() {
+            @Override
+            public Optional<String> command() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Optional<String> commandLine() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Optional<String[]> arguments() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Optional<Instant> startInstant() {
+                return Optional.of(startTime);
+            }
+
+            @Override
+            public Optional<Duration> totalCpuDuration() {
+                return Optional.ofNullable(cpuTime);
+            }
+
+            @Override
+            public Optional<String> user() {
+                return Optional.empty();
+            }
+        };
+    }
+
+    // Output goes straight to the launcher's console
+    @Override
+    public InputStream getInputStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Class loader of an application running inside the launcher's JVM (InProcessApp).
+ *
+ * Its parent is the platform class loader, so the application sees the JDK and its own JARs but
+ * none of the launcher's classes or libraries. The one exception is JavaFX: there can only be one
+ * toolkit per JVM, so the JavaFX classes (and their resources) come from the launcher and are shared
+ * by every application it runs.
+ *
+ * Native libraries are looked up in the application's own extracted {@code <nativelib>} folders
+ * first. The JVM lets only one class loader load a given library file, so two applications running
+ * inside the launcher cannot both load the same native library.
+ */
+public class IsolatedClassLoader extends URLClassLoader {
+
+    private static final String[] SHARED_PACKAGES = {
+            "javafx.", "com.sun.javafx.", "com.sun.glass.", "com.sun.prism.", "com.sun.scenario.",
+            "com.sun.webkit.", "com.sun.media.jfxmedia", "com.sun.media.jfxmediaimpl", "netscape.javascript."
+    };
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final ClassLoader launcherLoader = IsolatedClassLoader.class.getClassLoader();
+    private final List<Path> libraryDirs;
+
+    public IsolatedClassLoader(String name, URL[] urls, List<Path> libraryDirs) {
+        super(name, urls, ClassLoader.getPlatformClassLoader());
+        this.libraryDirs = List.copyOf(libraryDirs);
+    }
+
+    // Null falls back to java.library.path of the launcher
+    @Override
+    protected String findLibrary(String libname) {
+        String fileName = System.mapLibraryName(libname);
+        for (Path directory : libraryDirs) {
+            Path library = directory.resolve(fileName);
+            if (Files.isRegularFile(library)) {
+                return library.toAbsolutePath().toString();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (isShared(name)) {
+            return launcherLoader.loadClass(name);
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (isShared(name.replace('/', '.'))) {
+            return launcherLoader.getResource(name);
+        }
+        return super.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        if (isShared(name.replace('/', '.'))) {
+            return launcherLoader.getResources(name);
+        }
+        return super.getResources(name);
+    }
+
+    private static boolean isShared(String name) {
+        for (String prefix : SHARED_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
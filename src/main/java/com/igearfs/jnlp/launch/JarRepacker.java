@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.cache.ContentStore;
+import com.igearfs.jnlp.model.JarResource;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Launch-optimized copies of downloaded JARs, enabled with -Djnlp.repack=true.
+ *
+ * A copy holds the same entries as the stored JAR, but uncompressed, so loading a class is a plain
+ * read, and ordered the way the classes were loaded: the manifest and signature files first (where
+ * JarInputStream and signature checks expect them), then every class in the order a previous launch
+ * loaded it, then the remaining entries, and the rest of META-INF last. Signatures stay valid, they
+ * cover the entry contents and not how they are stored.
+ *
+ * The load order is recorded once per JAR content: a launch that resolved JARs without a recorded
+ * order runs with -Xlog:class+load, and when that application exits its log is turned into one
+ * {@code <sha256>.order} file per JAR under jnlp_cache/_repacked. The copy ({@code <sha256>.jar}) is
+ * then written in the background and used from the next resolved launch on. The original stays in
+ * the ContentStore, so hashes are still checked against the bytes the server sent.
+ */
+public class JarRepacker {
+
+    private static final boolean ENABLED = Boolean.getBoolean("jnlp.repack");
+    private static final String ORDER_SUFFIX = ".order";
+    private static final long LOG_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // Originals handed out by forLaunch without a copy, by absolute path, so a recording can name their content
+    private static final Map<Path, String> SHA_BY_PATH = new ConcurrentHashMap<>();
+    private static final Set<String> RECORDING = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService REPACKER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jar-repack");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Map<Path, String> recorded; // JARs whose load order this launch records
+    private final Path log;
+
+    private JarRepacker(Map<Path, String> recorded, Path log) {
+        this.recorded = recorded;
+        this.log = log;
+    }
+
+    /**
+     * The paths to launch {@code jars} (downloaded to {@code paths}, same order) from: the optimized
+     * copy where there is one, the original otherwise (also when its content hash is not in the index).
+     */
+    public static List<Path> forLaunch(List<JarResource> jars, List<Path> paths) {
+        if (!ENABLED) {
+            return paths;
+        }
+        List<Path> result = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            CacheIndex.Entry entry = CacheIndex.get().lookup(jars.get(i).getUrl());
+            if (entry == null || entry.getSha256() == null) {
+                result.add(paths.get(i));
+                continue;
+            }
+            String sha256 = entry.getSha256();
+            Path copy = copyPath(sha256);
+            if (Files.isRegularFile(copy)) {
+                result.add(copy);
+                continue;
+            }
+            result.add(paths.get(i));
+            SHA_BY_PATH.put(paths.get(i).toAbsolutePath().normalize(), sha256);
+            if (Files.exists(orderPath(sha256))) {
+                scheduleRepack(sha256); // Recorded, but the copy was never finished
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records the class load order of a launch when its classpath holds JARs that have none yet, null otherwise.
+     */
+    public static JarRepacker recorder(String classpath) {
+        if (!ENABLED) {
+            return null;
+        }
+        Map<Path, String> recorded = new HashMap<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (entry.isEmpty() || entry.endsWith("*")) {
+                continue;
+            }
+            Path path = Paths.get(entry).toAbsolutePath().normalize();
+            String sha256 = SHA_BY_PATH.get(path);
+            if (sha256 != null && !Files.exists(orderPath(sha256)) && !RECORDING.contains(sha256)) {
+                recorded.put(path, sha256);
+            }
+        }
+        if (recorded.isEmpty()) {
+            return null;
+        }
+        try {
+            Files.createDirectories(CacheLayout.repackedDir());
+            deleteStaleLogs();
+            Path log = Files.createTempFile(CacheLayout.repackedDir(), "load-", ".log").toAbsolutePath();
+            RECORDING.addAll(recorded.values());
+            return new JarRepacker(recorded, log);
+        } catch (IOException e) {
+            System.err.println("Could not record the class load order: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Only class names and where they came from, in one file that is not rotated
+    public List<String> jvmOptions() {
+        return List.of("-Xlog:class+load=info:file=\"" + log + "\":none:filecount=0");
+    }
+
+    public void started(Process process) {
+        process.onExit().thenRun(() -> REPACKER.submit(this::complete));
+    }
+
+    private void complete() {
+        try {
+            Map<String, List<String>> orders = new HashMap<>();
+            if (Files.exists(log)) {
+                try (Stream<String> lines = Files.lines(log, StandardCharsets.UTF_8)) {
+                    lines.forEach(line -> {
+                        // com.example.Main source: file:/path/to/app.jar
+                        int separator = line.indexOf(" source: ");
+                        if (separator < 0) {
+                            return;
+                        }
+                        String sha256 = recorded.get(sourcePath(line.substring(separator + 9).trim()));
+                        if (sha256 != null) {
+                            orders.computeIfAbsent(sha256, key -> new ArrayList<>())
+                                    .add(line.substring(0, separator).replace('.', '/') + ".class");
+                        }
+                    });
+                }
+            }
+            for (String sha256 : new HashSet<>(recorded.values())) {
+                // A JAR the application never loaded from still gets an (empty) order, it is not recorded again
+                Files.write(orderPath(sha256), orders.getOrDefault(sha256, List.of()), StandardCharsets.UTF_8);
+                repackNow(sha256);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read the class load log " + log + ": " + e.getMessage());
+        } finally {
+            RECORDING.removeAll(recorded.values());
+            try {
+                Files.deleteIfExists(log);
+            } catch (IOException e) {
+                // Removed with the stale logs later
+            }
+        }
+    }
+
+    private static Path sourcePath(String source) {
+        try {
+            if (source.startsWith("jar:")) {
+                source = source.substring(4);
+            }
+            int inside = source.indexOf("!/");
+            if (inside >= 0) {
+                source = source.substring(0, inside);
+            }
+            Path path = source.startsWith("file:") ? Paths.get(URI.create(source)) : Paths.get(source);
+            return path.toAbsolutePath().normalize();
+        } catch (RuntimeException e) {
+            return null; // "shared objects file", "jrt:/java.base", a defining class of a hidden class, ...
+        }
+    }
+
+    private static void scheduleRepack(String sha256) {
+        REPACKER.submit(() -> repackNow(sha256));
+    }
+
+    private static void repackNow(String sha256) {
+        Path copy = copyPath(sha256);
+        Path original = ContentStore.objectPath(sha256);
+        if (Files.exists(copy) || !Files.isRegularFile(original)) {
+            return;
+        }
+        try {
+            List<String> order = Files.readAllLines(orderPath(sha256), StandardCharsets.UTF_8);
+            repack(original, order, copy);
+            System.out.println("Repacked " + sha256.substring(0, 12) + ".jar for launching (" + order.size()
+                    + " classes in load order, " + Files.size(copy) / 1024 + " KB)");
+        } catch (IOException e) {
+            System.err.println("Could not repack " + original + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes {@code original} to {@code target} uncompressed, with the entries named in {@code order}
+     * right after the manifest and signature files. The target is replaced atomically.
+     */
+    static void repack(Path original, List<String> order, Path target) throws IOException {
+        Map<String, Integer> rank = new HashMap<>();
+        for (String name : order) {
+            rank.putIfAbsent(name, rank.size());
+        }
+        Path tempFile = target.resolveSibling(target.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (ZipFile zip = new ZipFile(original.toFile());
+             OutputStream file = Files.newOutputStream(tempFile);
+             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(file))) {
+            List<ZipEntry> entries = new ArrayList<>(Collections.list(zip.entries()));
+            // Stable, so entries keep their original order within a group
+            entries.sort(Comparator.<ZipEntry>comparingInt(entry -> group(entry.getName(), rank))
+                    .thenComparingInt(entry -> rank.getOrDefault(entry.getName(), Integer.MAX_VALUE)));
+
+            CRC32 crc = new CRC32();
+            for (ZipEntry entry : entries) {
+                byte[] data;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    data = in.readAllBytes();
+                }
+                crc.reset();
+                crc.update(data);
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setMethod(ZipEntry.STORED);
+                copy.setSize(data.length);
+                copy.setCompressedSize(data.length);
+                copy.setCrc(crc.getValue());
+                copy.setTime(entry.getTime());
+                out.putNextEntry(copy);
+                out.write(data);
+                out.closeEntry();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int group(String name, Map<String, Integer> rank) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        if (upper.equals("META-INF/") || upper.equals("META-INF/MANIFEST.MF")) {
+            return 0;
+        }
+        if (upper.startsWith("META-INF/") && upper.indexOf('/', 9) < 0 && (upper.startsWith("META-INF/SIG-")
+                || upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC"))) {
+            return 1;
+        }
+        if (rank.containsKey(name)) {
+            return 2;
+        }
+        return upper.startsWith("META-INF/") ? 4 : 3;
+    }
+
+    private static Path copyPath(String sha256) {
+        return CacheLayout.repackedDir().resolve(sha256 + ".jar");
+    }
+
+    private static Path orderPath(String sha256) {
+        return CacheLayout.repackedDir().resolve(sha256 + ORDER_SUFFIX);
+    }
+
+    // Logs of applications that outlived their launcher were never read
+    private static void deleteStaleLogs() {
+        long cutoff = System.currentTimeMillis() - LOG_MAX_AGE_MILLIS;
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(CacheLayout.repackedDir(), "load-*.log")) {
+            for (Path log : logs) {
+                if (Files.getLastModifiedTime(log).toMillis() < cutoff) {
+                    Files.deleteIfExists(log);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up class load logs: " + e.getMessage());
+        }
+    }
+}
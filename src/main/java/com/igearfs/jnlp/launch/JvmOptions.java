@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.model.JvmProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a JvmProfile into child JVM options.
+ *
+ * VM arguments come from the server (java-vm-args) as well as from the user, so only flags on the
+ * allowlist below are passed on: heap and GC tuning, rendering and a few harmless system properties.
+ * Anything that could load code or run commands (-javaagent, -Xbootclasspath, -XX:OnOutOfMemoryError,
+ * -Djava.system.class.loader, ...) is dropped with a message.
+ */
+public class JvmOptions {
+
+    private static final Pattern SIZE = Pattern.compile("\\d+[kKmMgGtT]?");
+
+    // -Xmx2g, -Xss512k, ...
+    private static final String[] SIZE_FLAGS = {"-Xms", "-Xmx", "-Xss", "-Xmn"};
+
+    // Flags that take a value after the prefix
+    private static final String[] VALUE_PREFIXES = {
+            "-XX:InitialRAMPercentage=", "-XX:MaxRAMPercentage=", "-XX:MinRAMPercentage=",
+            "-XX:NewRatio=", "-XX:SurvivorRatio=", "-XX:MaxMetaspaceSize=", "-XX:MetaspaceSize=",
+            "-XX:ReservedCodeCacheSize=", "-XX:MaxDirectMemorySize=", "-XX:SoftRefLRUPolicyMSPerMB=",
+            "-XX:MaxGCPauseMillis=", "-XX:GCTimeRatio=", "-XX:ParallelGCThreads=", "-XX:ConcGCThreads=",
+            "-XX:G1HeapRegionSize=", "-XX:InitiatingHeapOccupancyPercent=", "-XX:TieredStopAtLevel=",
+            "-Dprism.", "-Djavafx.", "-Dsun.java2d.", "-Dswing.aatext=", "-Dawt.useSystemAAFontSettings=",
+            "-Dfile.encoding=", "-Duser.language=", "-Duser.country=", "-Duser.timezone=",
+            "-Djava.net.preferIPv4Stack=", "-Djava.net.preferIPv6Addresses=",
+            "-Dhttps.protocols=", "-Djdk.tls.client.protocols="
+    };
+
+    private static final Set<String> FLAGS = new HashSet<>(Arrays.asList(
+            "-XX:+UseG1GC", "-XX:+UseParallelGC", "-XX:+UseSerialGC", "-XX:+UseZGC",
+            "-XX:+UseStringDeduplication", "-XX:-UseStringDeduplication",
+            "-XX:+ExitOnOutOfMemoryError", "-XX:+CrashOnOutOfMemoryError",
+            "-ea", "-da", "-esa", "-dsa", "-verbose:gc"
+    ));
+
+    /**
+     * The options for a profile. Without a rendering choice JavaFX renders in software,
+     * the way the launcher always ran it.
+     */
+    public static List<String> forProfile(JvmProfile profile) {
+        List<String> options = new ArrayList<>();
+
+        String initialHeap = heapSize("initial-heap-size", profile.getInitialHeapSize());
+        String maxHeap = heapSize("max-heap-size", profile.getMaxHeapSize());
+        if (initialHeap != null && maxHeap != null && bytes(initialHeap) > bytes(maxHeap)) {
+            // The JVM refuses to start on this, the maximum is the one that matters
+            System.err.println("Ignoring initial heap size " + initialHeap + ", it is larger than the maximum " + maxHeap);
+            initialHeap = null;
+        }
+        if (initialHeap != null) {
+            options.add("-Xms" + initialHeap);
+        }
+        if (maxHeap != null) {
+            options.add("-Xmx" + maxHeap);
+        }
+
+        String gcFlag = gcFlag(profile.getGarbageCollector());
+        if (gcFlag != null) {
+            options.add(gcFlag);
+        }
+
+        if (!JvmProfile.RENDERING_HARDWARE.equals(profile.getRendering())) {
+            // Software rendering always works; hardware leaves the choice to JavaFX, which still falls back to software
+            options.add("-Dprism.order=sw");
+        }
+
+        if (profile.getVmArgs() != null) {
+            for (String arg : profile.getVmArgs().trim().split("\\s+")) {
+                if (gcFlag != null && arg.startsWith("-XX:+Use") && arg.endsWith("GC")) {
+                    continue; // The chosen collector wins, two of them stop the JVM from starting
+                }
+                if (isAllowed(arg)) {
+                    options.add(arg);
+                } else {
+                    System.err.println("Ignoring JVM argument that is not allowed: " + arg);
+                }
+            }
+        }
+        return options;
+    }
+
+    public static boolean isAllowed(String arg) {
+        for (String flag : SIZE_FLAGS) {
+            if (arg.startsWith(flag) && isValidSize(arg.substring(flag.length()))) {
+                return true;
+            }
+        }
+        for (String prefix : VALUE_PREFIXES) {
+            if (arg.startsWith(prefix) && arg.length() > prefix.length()) {
+                return true;
+            }
+        }
+        return FLAGS.contains(arg);
+    }
+
+    // 512m, 2g, ... as taken by -Xms and -Xmx, and no more bytes than a long holds
+    public static boolean isValidSize(String value) {
+        return SIZE.matcher(value).matches() && bytes(value) >= 0;
+    }
+
+    private static String heapSize(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        if (!isValidSize(value)) {
+            System.err.println("Ignoring " + name + " " + value + ", expected a size like 512m or 2g");
+            return null;
+        }
+        return value;
+    }
+
+    // -1 when the size does not fit a long, the digits of a server's size are not limited
+    private static long bytes(String size) {
+        char unit = Character.toLowerCase(size.charAt(size.length() - 1));
+        int shift = "kmgt".indexOf(unit) < 0 ? 0 : 10 * ("kmgt".indexOf(unit) + 1);
+        String digits = Character.isDigit(unit) ? size : size.substring(0, size.length() - 1);
+        try {
+            long value = Long.parseLong(digits);
+            return value > Long.MAX_VALUE >> shift ? -1 : value << shift;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String gcFlag(String garbageCollector) {
+        if (garbageCollector == null) {
+            return null;
+        }
+        switch (garbageCollector.toUpperCase(Locale.ROOT)) {
+            case "G1":
+                return "-XX:+UseG1GC";
+            case "PARALLEL":
+                return "-XX:+UseParallelGC";
+            case "SERIAL":
+                return "-XX:+UseSerialGC";
+            case "ZGC":
+                return "-XX:+UseZGC";
+            default:
+                System.err.println("Ignoring unknown garbage collector " + garbageCollector);
+                return null;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.model.LaunchEntry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idle application JVMs started ahead of time, so a launch only pays for the application's own start.
+ * Off unless -Djnlp.pool.size is set (idle JVMs per set of JVM options, each costs memory).
+ *
+ * A pooled JVM is started with the JVM options of a previous launch, the shared libraries and JavaFX
+ * on its classpath and PooledJvmMain as main class. Once warm it connects to a loopback socket of
+ * this launcher, proves it was started by us with a token passed through its environment, and waits
+ * for the application JARs, main class and arguments. A launch with exactly the same JVM options takes
+ * such a JVM; the pool then starts a replacement in the background. JVMs idle for longer than
+ * -Djnlp.pool.idleMinutes (default 30) are retired, and all of them exit with the launcher.
+ */
+public class JvmPool {
+
+    private static final int SIZE = Integer.getInteger("jnlp.pool.size", 0);
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("jnlp.pool.idleMinutes", 30));
+    private static final int READY_TIMEOUT_MILLIS = 120_000;
+    private static final int HANDOVER_TIMEOUT_MILLIS = 10_000;
+
+    private static final String TOKEN = newToken();
+
+    // Starting JVMs, retiring them, ... one thing at a time and never on the launch path
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jvm-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, Deque<PooledJvm>> IDLE = new HashMap<>(); // By key, guarded by itself
+    private static ServerSocket server; // Only used by the worker
+    private static long nextId;
+
+    static {
+        if (SIZE > 0) {
+            WORKER.scheduleWithFixedDelay(JvmPool::retireIdle, 1, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return SIZE > 0;
+    }
+
+    /**
+     * Runs the application in a pooled JVM started with exactly {@code options} and {@code sharedClasspath},
+     * or returns null when there is none and it has to be started cold. Either way the pool is refilled
+     * for these options afterwards.
+     */
+    public static ChildProcess launch(LaunchEntry entry, List<String> options, String sharedClasspath,
+                                      List<String> appClasspath, String mainClass, List<String> appArgs) {
+        if (SIZE <= 0) {
+            return null;
+        }
+        String key = String.join("\n", options) + "\n" + sharedClasspath;
+        try {
+            while (true) {
+                PooledJvm jvm;
+                synchronized (IDLE) {
+                    Deque<PooledJvm> idle = IDLE.get(key);
+                    jvm = idle == null ? null : idle.pollFirst();
+                }
+                if (jvm == null) {
+                    return null;
+                }
+                Instant startTime = Instant.now();
+                if (jvm.handOver(appClasspath, mainClass, appArgs)) {
+                    System.out.println("Launching " + entry.getName() + " in pooled JVM (pid " + jvm.process.pid() + ")");
+                    return ProcessSupervisor.register(entry.getId(), entry.getName(), jvm.process, startTime);
+                }
+                // Died while idle, try the next one
+            }
+        } finally {
+            WORKER.submit(() -> refill(key, options, sharedClasspath));
+        }
+    }
+
+    private static void refill(String key, List<String> options, String sharedClasspath) {
+        int idle;
+        synchronized (IDLE) {
+            idle = IDLE.getOrDefault(key, new ArrayDeque<>()).size();
+        }
+        for (int i = idle; i < SIZE; i++) {
+            try {
+                PooledJvm jvm = start(options, sharedClasspath);
+                synchronized (IDLE) {
+                    IDLE.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(jvm);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not start a pooled JVM: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static PooledJvm start(List<String> options, String sharedClasspath) throws IOException {
+        if (server == null) {
+            server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            server.setSoTimeout(READY_TIMEOUT_MILLIS);
+        }
+
+        List<String> jvmOptions = new ArrayList<>(options);
+        jvmOptions.add("-cp");
+        jvmOptions.add(BootstrapJar.of(PooledJvmMain.class, "pool-main") + File.pathSeparator + sharedClasspath);
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ArgFile.commandLine(jvmOptions));
+        command.add(PooledJvmMain.class.getName());
+        command.add(String.valueOf(server.getLocalPort()));
+
+        String id = String.valueOf(++nextId);
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.environment().put(PooledJvmMain.TOKEN_ENV, TOKEN);
+        processBuilder.environment().put(PooledJvmMain.ID_ENV, id);
+        Process process = processBuilder.start();
+        // Idle or running an application, the JVM has the library set open
+        List<Path> sharedJars = new ArrayList<>();
+        for (String path : sharedClasspath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                sharedJars.add(Paths.get(path));
+            }
+        }
+        LibrarySets.holdUntil(sharedJars, process.onExit());
+
+        // Whatever connects has to present the token and the id of the JVM just started
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketTimeoutException e) {
+                break;
+            }
+            socket.setSoTimeout(HANDOVER_TIMEOUT_MILLIS);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String hello;
+            try {
+                hello = in.readLine();
+            } catch (SocketTimeoutException e) {
+                hello = null;
+            }
+            if (("ready " + id + " " + TOKEN).equals(hello)) {
+                socket.setSoTimeout(0);
+                System.out.println("Pooled JVM ready (pid " + process.pid() + ")");
+                return new PooledJvm(process, socket, in);
+            }
+            socket.close();
+        }
+        process.destroy();
+        throw new IOException("pooled JVM did not report ready");
+    }
+
+    private static void retireIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_MILLIS;
+        List<PooledJvm> retired = new ArrayList<>();
+        synchronized (IDLE) {
+            for (Iterator<Deque<PooledJvm>> keys = IDLE.values().iterator(); keys.hasNext(); ) {
+                Deque<PooledJvm> idle = keys.next();
+                idle.removeIf(jvm -> {
+                    if (jvm.idleSince < cutoff || !jvm.process.isAlive()) {
+                        retired.add(jvm);
+                        return true;
+                    }
+                    return false;
+                });
+                if (idle.isEmpty()) {
+                    keys.remove();
+                }
+            }
+        }
+        for (PooledJvm jvm : retired) {
+            jvm.retire();
+        }
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static class PooledJvm {
+        private final Process process;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final long idleSince = System.currentTimeMillis();
+
+        PooledJvm(Process process, Socket socket, BufferedReader in) {
+            this.process = process;
+            this.socket = socket;
+            this.in = in;
+        }
+
+        boolean handOver(List<String> appClasspath, String mainClass, List<String> appArgs) {
+            try {
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.UTF_8);
+                for (String path : appClasspath) {
+                    out.println("classpath " + escape(path));
+                }
+                out.println("main " + escape(mainClass));
+                for (String arg : appArgs) {
+                    out.println("arg " + escape(arg));
+                }
+                out.println("go");
+                out.flush();
+                socket.setSoTimeout(HANDOVER_TIMEOUT_MILLIS);
+                if ("started".equals(in.readLine())) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // Treated like a JVM that died
+            } finally {
+                close();
+            }
+            process.destroy();
+            return false;
+        }
+
+        // The JVM exits when its connection closes
+        void retire() {
+            close();
+            process.destroy();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+        }
+    }
+}
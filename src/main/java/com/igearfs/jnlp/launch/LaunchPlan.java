@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.model.JvmProfile;
+import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything needed to start an application again without the server: main class, arguments, the
+ * JVM settings of the JNLP, the resolved classpath and the folders of its extracted native libraries,
+ * stored per LaunchEntry under jnlp_cache/_plans.
+ *
+ * A plan validated less than -Djnlp.plan.maxAgeHours ago (default 24) is launched right away while
+ * it is revalidated in the background. An older plan is only used when the server cannot be
+ * reached, or when the user launches offline.
+ */
+public class LaunchPlan {
+
+    private static final String FORMAT = "3"; // 3: native directories of a plan are chosen by whole arch names
+    private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("jnlp.plan.maxAgeHours", 24));
+
+    private final String entryId;
+    private final String jnlpUrl;
+    private final String descriptorSha256; // Content hash of the JNLP the plan was resolved from
+    private final String mainClass;
+    private final List<String> arguments;
+    private final JvmProfile jvmProfile; // As declared by the JNLP, the entry's own overrides are applied at launch
+    private final List<String> classpath;
+    private final List<Path> nativeDirs; // See NativeLibraryCache
+    private final boolean trusted; // Every JAR passed JarVerifier when the plan was made
+    private final boolean javaFxApplication; // The main class can run inside the launcher, see InProcessApp
+    private final long validatedAt;
+
+    public LaunchPlan(String entryId, String jnlpUrl, String descriptorSha256, String mainClass, List<String> arguments,
+                      JvmProfile jvmProfile, List<String> classpath, List<Path> nativeDirs, boolean trusted,
+                      boolean javaFxApplication, long validatedAt) {
+        this.entryId = entryId;
+        this.jnlpUrl = jnlpUrl;
+        this.descriptorSha256 = descriptorSha256;
+        this.mainClass = mainClass;
+        this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+        this.jvmProfile = jvmProfile;
+        this.classpath = Collections.unmodifiableList(new ArrayList<>(classpath));
+        this.nativeDirs = Collections.unmodifiableList(new ArrayList<>(nativeDirs));
+        this.trusted = trusted;
+        this.javaFxApplication = javaFxApplication;
+        this.validatedAt = validatedAt;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public String getJnlpUrl() {
+        return jnlpUrl;
+    }
+
+    public String getDescriptorSha256() {
+        return descriptorSha256;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    public JvmProfile getJvmProfile() {
+        return jvmProfile;
+    }
+
+    public List<String> getClasspath() {
+        return classpath;
+    }
+
+    public List<Path> getNativeDirs() {
+        return nativeDirs;
+    }
+
+    public boolean isTrusted() {
+        return trusted;
+    }
+
+    public boolean isJavaFxApplication() {
+        return javaFxApplication;
+    }
+
+    public long getValidatedAt() {
+        return validatedAt;
+    }
+
+    // The classpath in the form launchApp takes it
+    public String classpathString() {
+        return String.join(File.pathSeparator, classpath);
+    }
+
+    public boolean isFresh() {
+        return System.currentTimeMillis() - validatedAt < MAX_AGE_MILLIS;
+    }
+
+    public String describeAge() {
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - validatedAt);
+        return minutes < 120 ? minutes + " minutes" : (minutes / 60) + " hours";
+    }
+
+    /**
+     * The saved plan of an entry, or null when there is none, it was made for another URL,
+     * or a JAR or native library folder it needs is no longer on disk.
+     */
+    public static LaunchPlan load(LaunchEntry entry) {
+        Path file = file(entry.getId());
+        if (!Files.exists(file)) {
+            file = legacyFile(entry.getId()); // Its jnlp-url is checked like any other
+            if (!Files.exists(file)) {
+                return null;
+            }
+        }
+        String jnlpUrl = null;
+        String descriptorSha256 = null;
+        String mainClass = null;
+        JvmProfile jvmProfile = JvmProfile.EMPTY; // Plans written before JVM settings were kept
+        boolean trusted = false; // Plans written before JARs were verified
+        boolean javaFxApplication = false; // Plans written before it was checked, until they are revalidated
+        long validatedAt = 0;
+        List<String> arguments = new ArrayList<>();
+        List<String> classpath = new ArrayList<>();
+        List<Path> nativeDirs = new ArrayList<>();
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals("format|" + FORMAT)) {
+                return null;
+            }
+            for (String line : lines) {
+                int separator = line.indexOf('|');
+                if (separator < 0) {
+                    continue;
+                }
+                // The value is the rest of the line, arguments may contain '|' themselves
+                String value = line.substring(separator + 1);
+                switch (line.substring(0, separator)) {
+                    case "jnlp-url":
+                        jnlpUrl = value;
+                        break;
+                    case "descriptor-sha256":
+                        descriptorSha256 = value;
+                        break;
+                    case "main-class":
+                        mainClass = value;
+                        break;
+                    case "jvm":
+                        jvmProfile = JvmProfile.decode(value);
+                        break;
+                    case "trusted":
+                        trusted = Boolean.parseBoolean(value);
+                        break;
+                    case "javafx-application":
+                        javaFxApplication = Boolean.parseBoolean(value);
+                        break;
+                    case "validated-at":
+                        validatedAt = Long.parseLong(value);
+                        break;
+                    case "argument":
+                        arguments.add(unescape(value));
+                        break;
+                    case "classpath":
+                        classpath.add(value);
+                        break;
+                    case "native":
+                        nativeDirs.add(Paths.get(value));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable launch plan " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        if (!entry.getUrl().equals(jnlpUrl) || mainClass == null || mainClass.isEmpty()) {
+            return null;
+        }
+        for (String path : classpath) {
+            if (path.endsWith(".jar") && !Files.isRegularFile(Paths.get(path))) {
+                System.out.println("Launch plan of " + entry.getName() + " is missing " + path);
+                return null;
+            }
+        }
+        for (Path nativeDir : nativeDirs) {
+            if (!Files.isDirectory(nativeDir)) {
+                System.out.println("Launch plan of " + entry.getName() + " is missing " + nativeDir);
+                return null;
+            }
+        }
+        return new LaunchPlan(entry.getId(), jnlpUrl, descriptorSha256, mainClass, arguments, jvmProfile, classpath,
+                nativeDirs, trusted, javaFxApplication, validatedAt);
+    }
+
+    public void save() {
+        List<String> lines = new ArrayList<>();
+        lines.add("format|" + FORMAT);
+        lines.add("jnlp-url|" + jnlpUrl);
+        lines.add("descriptor-sha256|" + (descriptorSha256 == null ? "" : descriptorSha256));
+        lines.add("main-class|" + mainClass);
+        lines.add("jvm|" + jvmProfile.encode());
+        lines.add("trusted|" + trusted);
+        lines.add("javafx-application|" + javaFxApplication);
+        lines.add("validated-at|" + validatedAt);
+        for (String argument : arguments) {
+            lines.add("argument|" + escape(argument));
+        }
+        for (String path : classpath) {
+            lines.add("classpath|" + path);
+        }
+        for (Path nativeDir : nativeDirs) {
+            lines.add("native|" + nativeDir);
+        }
+
+        Path file = file(entryId);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(legacyFile(entryId));
+        } catch (IOException e) {
+            // Without a plan the next launch simply resolves everything again
+            System.err.println("Could not save launch plan " + file + ": " + e.getMessage());
+        }
+    }
+
+    public static void delete(String entryId) {
+        try {
+            Files.deleteIfExists(file(entryId));
+            Files.deleteIfExists(legacyFile(entryId));
+        } catch (IOException e) {
+            System.err.println("Could not delete launch plan of " + entryId + ": " + e.getMessage());
+        }
+    }
+
+    // By a hash of the ID, replacing characters would give IDs like "a.b" and "a_b" the same plan
+    private static Path file(String entryId) {
+        return CacheLayout.plansDir().resolve("plan-" + DigestUtil.sha256Hex(entryId).substring(0, 16) + ".txt");
+    }
+
+    // Where plans were saved before, still read so an upgrade can launch offline
+    private static Path legacyFile(String entryId) {
+        return CacheLayout.plansDir().resolve(entryId.replaceAll("[^A-Za-z0-9_-]", "_") + ".txt");
+    }
+
+    // One argument per line
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * System class loader of an application launched with lazy parts, installed with
+ * -Djava.system.class.loader. It runs inside the application JVM and must not use any other
+ * launcher class: LazyParts packs this single class into the bootstrap JAR on the child classpath.
+ *
+ * The manifest (-Djnlp.lazy.manifest) lists the eager classpath, the lazy parts and the package
+ * to part mapping. The launcher appends every part it finished to the status file next to it;
+ * when a class is missing this loader waits for the part that holds it and adds its JARs.
+ *
+ * Applications probe for optional classes all the time (logging backends, XML providers, look and
+ * feels), so a class of no known part only waits up to -Djnlp.lazy.unmappedWaitMillis (default
+ * 2000) for any part to finish. Once such a wait ran out, further unmapped lookups only take the
+ * parts that finished meanwhile, until the next part finishes. Waits never hold the loader's lock.
+ */
+public class LazyPartClassLoader extends URLClassLoader {
+
+    public static final String MANIFEST_PROPERTY = "jnlp.lazy.manifest";
+    public static final String STATUS_SUFFIX = ".status";
+
+    private static final long TIMEOUT_MILLIS = Long.getLong("jnlp.lazy.timeout", 300) * 1000;
+    private static final long UNMAPPED_WAIT_MILLIS = Long.getLong("jnlp.lazy.unmappedWaitMillis", 2000);
+    private static final long POLL_MILLIS = 50;
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final Object partLock = new Object();
+    private final List<String> pendingParts = new ArrayList<>();
+    private final List<String[]> packages = new ArrayList<>(); // name, part, recursive
+    private Path statusFile;
+    private int statusLinesRead;
+    private int finishedParts; // Parts read from the status file so far, guarded by partLock
+    private boolean unmappedWaitExpired; // Guarded by partLock
+
+    public LazyPartClassLoader(ClassLoader parent) {
+        super(new URL[0], parent);
+        String manifest = System.getProperty(MANIFEST_PROPERTY);
+        if (manifest == null) {
+            return;
+        }
+        try {
+            Path manifestFile = Paths.get(manifest);
+            statusFile = manifestFile.resolveSibling(manifestFile.getFileName() + STATUS_SUFFIX);
+            for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\\|", -1);
+                switch (fields[0]) {
+                    case "classpath":
+                        addPath(unescape(fields[1]));
+                        break;
+                    case "part":
+                        pendingParts.add(unescape(fields[1]));
+                        break;
+                    case "package":
+                        packages.add(new String[]{unescape(fields[1]), unescape(fields[2]), fields[3]});
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read lazy part manifest " + manifest, e);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        while (true) {
+            int seen = finishedParts();
+            try {
+                return super.findClass(name);
+            } catch (ClassNotFoundException e) {
+                int lastDot = name.lastIndexOf('.');
+                String packageName = lastDot < 0 ? "" : name.substring(0, lastDot);
+                String part = partOf(packageName, name);
+                // Per the JNLP spec a class of no known part may live in any lazy part
+                boolean retry = part != null ? awaitPart(part, seen) : awaitAnyPart(seen);
+                if (!retry) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        int seen = finishedParts();
+        URL url = super.findResource(name);
+        // Resources of unmapped packages are not waited for, frameworks probe for optional ones all the time
+        String part = partOf(resourcePackage(name), null);
+        if (url == null && part != null && awaitPart(part, seen)) {
+            url = super.findResource(name);
+        }
+        return url;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        String part = partOf(resourcePackage(name), null);
+        if (part != null) {
+            awaitPart(part, finishedParts());
+        }
+        return super.findResources(name);
+    }
+
+    private int finishedParts() {
+        synchronized (partLock) {
+            readStatus();
+            return finishedParts;
+        }
+    }
+
+    /**
+     * Waits until {@code part} is no longer pending. Returns whether parts finished since the
+     * caller's lookup, which then is worth repeating.
+     */
+    private boolean awaitPart(String part, int seen) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            synchronized (partLock) {
+                readStatus();
+                if (!pendingParts.contains(part)) {
+                    return finishedParts != seen;
+                }
+            }
+            if (System.currentTimeMillis() > deadline) {
+                System.err.println("Timed out waiting for lazy part " + part);
+                return false;
+            }
+            if (!pause()) {
+                return false;
+            }
+        }
+    }
+
+    // Waits a short while for any part to finish, for classes of no known part
+    private boolean awaitAnyPart(int seen) {
+        long deadline = System.currentTimeMillis() + UNMAPPED_WAIT_MILLIS;
+        while (true) {
+            synchronized (partLock) {
+                readStatus();
+                if (finishedParts != seen) {
+                    return true;
+                }
+                if (pendingParts.isEmpty() || unmappedWaitExpired) {
+                    return false;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    unmappedWaitExpired = true;
+                    return false;
+                }
+            }
+            if (!pause()) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean pause() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String partOf(String packageName, String className) {
+        for (String[] mapping : packages) {
+            String name = mapping[0];
+            if (name.endsWith(".*")) {
+                String prefix = name.substring(0, name.length() - 2);
+                if (packageName.equals(prefix) || (Boolean.parseBoolean(mapping[2]) && packageName.startsWith(prefix + "."))) {
+                    return mapping[1];
+                }
+            } else if (name.equals(className)) {
+                return mapping[1];
+            }
+        }
+        return null;
+    }
+
+    // Picks up parts the launcher finished since the last look, only complete lines count
+    private void readStatus() {
+        if (statusFile == null || !Files.exists(statusFile)) {
+            return;
+        }
+        try {
+            String content = Files.readString(statusFile, StandardCharsets.UTF_8);
+            List<String> lines = new ArrayList<>();
+            Collections.addAll(lines, content.split("\n", -1));
+            lines.remove(lines.size() - 1); // Text after the last newline is still being written
+            for (int i = statusLinesRead; i < lines.size(); i++) {
+                String[] fields = lines.get(i).split("\\|", -1);
+                String part = unescape(fields[1]);
+                if ("done".equals(fields[0])) {
+                    for (int j = 2; j < fields.length; j++) {
+                        addPath(unescape(fields[j]));
+                    }
+                } else {
+                    System.err.println("Lazy part " + part + " could not be downloaded");
+                }
+                pendingParts.remove(part);
+                finishedParts++;
+                unmappedWaitExpired = false;
+            }
+            statusLinesRead = lines.size();
+        } catch (IOException e) {
+            System.err.println("Could not read lazy part status " + statusFile + ": " + e.getMessage());
+        }
+    }
+
+    private void addPath(String path) {
+        try {
+            addURL(Paths.get(path).toUri().toURL());
+        } catch (MalformedURLException e) {
+            System.err.println("Ignoring classpath entry " + path + ": " + e.getMessage());
+        }
+    }
+
+    // LazyParts escapes '%', '|' and line breaks as %XX, so a path may contain the field separator
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length()) {
+                result.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String resourcePackage(String resourceName) {
+        int lastSlash = resourceName.lastIndexOf('/');
+        return lastSlash < 0 ? "" : resourceName.substring(0, lastSlash).replace('/', '.');
+    }
+
+    // Lets java agents extend the classpath, required of a custom system class loader
+    void appendToClassPathForInstrumentation(String path) {
+        addPath(path);
+    }
+}
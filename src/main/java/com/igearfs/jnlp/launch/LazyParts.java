@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.download.DownloadEngine;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.model.PackageResource;
+import com.igearfs.jnlp.security.JarVerifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Splits the JARs of a descriptor into the eager set needed to start the application and the
+ * lazy parts (download="lazy", grouped by part) that are fetched after it started. Native library
+ * JARs are kept apart: they are always fetched at startup and never go on the classpath.
+ *
+ * The application gets the eager classpath through a manifest read by LazyPartClassLoader; every
+ * lazy part that finished downloading is appended to the status file next to the manifest.
+ */
+public class LazyParts {
+
+    private static final long MANIFEST_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // One part after the other, each part itself is downloaded in parallel by the engine
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lazy-part-download");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<JarResource> eagerJars = new ArrayList<>();
+    private final List<JarResource> nativeJars = new ArrayList<>();
+    private final Map<String, List<JarResource>> lazyParts = new LinkedHashMap<>(); // Descriptor order
+    private final List<PackageResource> packages = new ArrayList<>();
+
+    public static LazyParts split(List<JarResource> jars, List<PackageResource> packages) {
+        // A part is downloaded as a whole, one eager JAR makes the entire part eager
+        Set<String> eagerParts = new HashSet<>();
+        for (JarResource jar : jars) {
+            if (!jar.isLazy() && !jar.isNativeLib() && jar.getPart() != null) {
+                eagerParts.add(jar.getPart());
+            }
+        }
+
+        LazyParts parts = new LazyParts();
+        for (JarResource jar : jars) {
+            if (jar.isNativeLib()) {
+                parts.nativeJars.add(jar);
+            } else if (!jar.isLazy() || eagerParts.contains(jar.getPart())) {
+                parts.eagerJars.add(jar);
+            } else {
+                // A lazy JAR without a part is a part of its own
+                String part = jar.getPart() != null ? jar.getPart() : jar.getUrl();
+                parts.lazyParts.computeIfAbsent(part, name -> new ArrayList<>()).add(jar);
+            }
+        }
+        for (PackageResource packageResource : packages) {
+            if (parts.lazyParts.containsKey(packageResource.getPart())) {
+                parts.packages.add(packageResource);
+            }
+        }
+        return parts;
+    }
+
+    public List<JarResource> getEagerJars() {
+        return eagerJars;
+    }
+
+    public List<JarResource> getNativeJars() {
+        return nativeJars;
+    }
+
+    // Everything fetched before the application starts: the eager JARs followed by the native ones
+    public List<JarResource> getStartupJars() {
+        List<JarResource> jars = new ArrayList<>(eagerJars);
+        jars.addAll(nativeJars);
+        return jars;
+    }
+
+    // Every lazy JAR, in part order
+    public List<JarResource> getLazyJars() {
+        List<JarResource> jars = new ArrayList<>();
+        for (List<JarResource> part : lazyParts.values()) {
+            jars.addAll(part);
+        }
+        return jars;
+    }
+
+    public boolean hasLazyParts() {
+        return !lazyParts.isEmpty();
+    }
+
+    /**
+     * Writes the manifest LazyPartClassLoader reads at startup, with an empty status file next to it.
+     */
+    public Path writeManifest(String classpath) throws IOException {
+        Path dir = CacheLayout.launchDir();
+        Files.createDirectories(dir);
+        deleteStaleManifests(dir);
+
+        List<String> lines = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                lines.add("classpath|" + escape(Path.of(entry).toAbsolutePath().toString()));
+            }
+        }
+        for (String part : lazyParts.keySet()) {
+            lines.add("part|" + escape(part));
+        }
+        for (PackageResource packageResource : packages) {
+            lines.add("package|" + escape(packageResource.getName()) + "|" + escape(packageResource.getPart()) + "|"
+                    + packageResource.isRecursive());
+        }
+
+        Path manifest = Files.createTempFile(dir, "lazy-", ".txt");
+        Files.write(manifest, lines, StandardCharsets.UTF_8);
+        Files.write(statusFile(manifest), new byte[0]);
+        return manifest.toAbsolutePath();
+    }
+
+    /**
+     * Downloads the lazy parts one after the other and reports each of them to the running application.
+     * {@code onComplete} receives the JARs of all lazy parts, if every one of them could be downloaded, and
+     * whether JarVerifier trusted all of them. A part JarVerifier refuses is reported as failed.
+     */
+    public void downloadInBackground(DownloadEngine engine, DownloadEngine.DownloadTask task, Path manifest,
+                                     BiConsumer<List<Path>, Boolean> onComplete) {
+        Path status = statusFile(manifest);
+        BACKGROUND.submit(() -> {
+            List<Path> downloaded = new ArrayList<>();
+            boolean complete = true;
+            boolean trusted = true;
+            try {
+                for (Map.Entry<String, List<JarResource>> part : lazyParts.entrySet()) {
+                    StringBuilder line = new StringBuilder();
+                    try {
+                        List<Path> paths = engine.downloadAll(part.getValue(), task);
+                        trusted &= JarVerifier.verify(part.getValue(), paths);
+                        downloaded.addAll(paths);
+                        line.append("done|").append(escape(part.getKey()));
+                        for (Path path : paths) {
+                            line.append('|').append(escape(path.toAbsolutePath().toString()));
+                        }
+                        System.out.println("Lazy part downloaded: " + part.getKey());
+                    } catch (InterruptedIOException e) {
+                        return;
+                    } catch (IOException | SecurityException e) {
+                        System.err.println("Could not download lazy part " + part.getKey() + ": " + e.getMessage());
+                        line.append("failed|").append(escape(part.getKey()));
+                        complete = false;
+                    }
+                    line.append('\n');
+                    Files.writeString(status, line, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                }
+                if (complete) {
+                    onComplete.accept(downloaded, trusted);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not report lazy parts to " + status + ": " + e.getMessage());
+            } finally {
+                CacheIndex.get().save();
+            }
+        });
+    }
+
+    /**
+     * Lets pending lazy downloads finish, for callers that exit right after launching.
+     */
+    public static void finishBackgroundDownloads() throws InterruptedException {
+        BACKGROUND.shutdown();
+        BACKGROUND.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    // The JAR that puts LazyPartClassLoader on the application classpath
+    public static Path bootstrapJar() throws IOException {
+        return BootstrapJar.of(LazyPartClassLoader.class, "lazy-loader");
+    }
+
+    // Fields are separated by '|', which paths and part names may contain, see LazyPartClassLoader.unescape
+    private static String escape(String value) {
+        return value.replace("%", "%25").replace("|", "%7C").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    private static Path statusFile(Path manifest) {
+        return manifest.resolveSibling(manifest.getFileName() + LazyPartClassLoader.STATUS_SUFFIX);
+    }
+
+    // Manifests are tied to one application run, anything older than a day is left over
+    private static void deleteStaleManifests(Path dir) {
+        long cutoff = System.currentTimeMillis() - MANIFEST_MAX_AGE_MILLIS;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "lazy-*.txt*")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.cache.CacheLock;
+import com.igearfs.jnlp.net.LauncherHttpClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The shared client libraries every application gets on its classpath, one set per server version.
+ *
+ * A server's version comes from its descriptor (see JnlpParser). The set for it is looked up, in order:
+ * <ul>
+ *     <li>a folder named after the version next to the launcher, like the bundled 4.5.2 tree</li>
+ *     <li>a set unpacked before, under jnlp_cache/_libraries</li>
+ *     <li>{@code <version>.zip} in the folder -Djnlp.libraries.archives (default "libraries"), unpacked into the cache</li>
+ *     <li>the archive at -Djnlp.libraries.url, where {version} is replaced with the version, downloaded and unpacked into the cache</li>
+ * </ul>
+ * A server whose set cannot be found gets the closest one there is, preferring the same major and
+ * minor version, and -Djnlp.libraries.default (default 4.5.2) when it states no version at all.
+ *
+ * The set every entry last launched with is kept in jnlp_cache/_libraries/versions.txt, by user when
+ * several share the cache; unpacked sets that no entry of any user needs any more are deleted. A set
+ * an application or an idle pooled JVM still runs from is kept until it exits, even when its entry
+ * moved on to another version: it holds a shared lock on jnlp_cache/_locks/library-<version>.lock,
+ * which every launcher sharing the cache sees. The folders next to the launcher are never touched.
+ * One launcher at a time unpacks or prunes sets; archives are downloaded before taking that lock.
+ */
+public class LibrarySets {
+
+    private static final String DEFAULT_VERSION = System.getProperty("jnlp.libraries.default", "4.5.2");
+    private static final Path ARCHIVES_DIR = Paths.get(System.getProperty("jnlp.libraries.archives", "libraries"));
+    private static final String DOWNLOAD_URL = System.getProperty("jnlp.libraries.url", "");
+    private static final String VERSIONS_FILE = "versions.txt";
+    private static final String USER = System.getProperty("user.name", "").replace('|', '_');
+    private static final long TEMP_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    // Versions name folders, so only plain release numbers are accepted
+    private static final Pattern VERSION = Pattern.compile("\\d+(\\.\\d+)+");
+
+    // Sets applications of this launcher run from, by folder name, guarded by itself
+    private static final Map<String, Hold> HOLDS = new HashMap<>();
+
+    private static final ExecutorService PRUNER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "library-prune");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * The folder holding the library set for {@code serverVersion} (null when the server did not state
+     * one), remembering it as the set of entry {@code entryId}.
+     */
+    public static Path resolve(String entryId, String serverVersion) {
+        String version = serverVersion != null && VERSION.matcher(serverVersion).matches() ? serverVersion : DEFAULT_VERSION;
+        if (serverVersion == null) {
+            System.out.println("Server states no version, using the " + version + " libraries");
+        }
+        Path set = resolve(entryId, version, false);
+        if (set == null) {
+            String closest = closest(version);
+            System.err.println("No client libraries for server version " + version + ", using the " + closest + " libraries");
+            set = resolve(entryId, closest, true);
+        }
+        return set;
+    }
+
+    // Null when the set is nowhere to be found, unless it is the last resort
+    private static Path resolve(String entryId, String version, boolean lastResort) {
+        // A download can take minutes, launches of every other version must not wait for it
+        Path downloaded = isMissing(version) ? download(version) : null;
+        try (CacheLock lock = CacheLock.acquire("libraries")) {
+            return resolveLocked(entryId, version, downloaded, lastResort);
+        } catch (IOException e) {
+            System.err.println("Could not lock the client libraries: " + e.getMessage());
+            return resolveLocked(entryId, version, downloaded, lastResort);
+        } finally {
+            if (downloaded != null) {
+                try {
+                    Files.deleteIfExists(downloaded);
+                } catch (IOException e) {
+                    // Cleared with the temp folder
+                }
+            }
+        }
+    }
+
+    private static Path resolveLocked(String entryId, String version, Path downloaded, boolean lastResort) {
+        Path set = find(version, downloaded);
+        if (set == null && lastResort) {
+            set = Paths.get(version); // Nothing at all, the classpath gets no libraries
+        }
+        if (set != null) {
+            // The set in use is the one pruning has to keep
+            remember(entryId, set.getFileName().toString());
+        }
+        return set;
+    }
+
+    /**
+     * Keeps the unpacked sets among {@code jars} from being pruned, by this and every other launcher
+     * sharing the cache, until {@code exit} completes.
+     */
+    public static void holdUntil(Collection<Path> jars, CompletableFuture<?> exit) {
+        Set<String> sets = new HashSet<>();
+        Path librariesDir = CacheLayout.librariesDir().toAbsolutePath().normalize();
+        for (Path jar : jars) {
+            Path absolute = jar.toAbsolutePath().normalize();
+            if (absolute.startsWith(librariesDir) && !absolute.equals(librariesDir)) {
+                String name = librariesDir.relativize(absolute).getName(0).toString();
+                if (VERSION.matcher(name).matches()) {
+                    sets.add(name);
+                }
+            }
+        }
+        Set<String> held = new HashSet<>();
+        for (String set : sets) {
+            if (hold(set)) {
+                held.add(set);
+            }
+        }
+        exit.whenComplete((result, failure) -> held.forEach(LibrarySets::release));
+    }
+
+    /**
+     * Whether {@code jar} belongs to a library set, as opposed to the JARs of an application.
+     */
+    public static boolean contains(Path jar) {
+        Path absolute = jar.toAbsolutePath().normalize();
+        if (absolute.startsWith(CacheLayout.librariesDir().toAbsolutePath().normalize())) {
+            return true;
+        }
+        Path home = Paths.get("").toAbsolutePath();
+        if (!absolute.startsWith(home) || absolute.equals(home)) {
+            return false;
+        }
+        Path top = home.relativize(absolute).getName(0);
+        return VERSION.matcher(top.toString()).matches() && Files.isDirectory(home.resolve(top));
+    }
+
+    /**
+     * Forgets the versions of entries that no longer exist and deletes the unpacked sets only they needed.
+     */
+    public static void retainEntries(Collection<String> entryIds) {
+        Set<String> retained = new HashSet<>(entryIds);
+        PRUNER.submit(() -> prune(retained));
+    }
+
+    private static Path find(String version, Path downloaded) {
+        Path bundled = Paths.get(version);
+        if (Files.isDirectory(bundled)) {
+            return bundled;
+        }
+        Path unpacked = CacheLayout.librariesDir().resolve(version);
+        if (Files.isDirectory(unpacked)) {
+            return unpacked; // Possibly by another launcher while this one downloaded
+        }
+        Path archive = ARCHIVES_DIR.resolve(version + ".zip");
+        if (!Files.isRegularFile(archive)) {
+            archive = downloaded;
+        }
+        if (archive == null) {
+            return null;
+        }
+        try {
+            unpack(archive, version, unpacked);
+            return unpacked;
+        } catch (IOException e) {
+            System.err.println("Could not get the client libraries for version " + version + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Only the download URL could provide the set
+    private static boolean isMissing(String version) {
+        return !DOWNLOAD_URL.isEmpty() && !Files.isDirectory(Paths.get(version))
+                && !Files.isDirectory(CacheLayout.librariesDir().resolve(version))
+                && !Files.isRegularFile(ARCHIVES_DIR.resolve(version + ".zip"));
+    }
+
+    // The set to fall back to among those there are, nothing is fetched for it
+    private static String closest(String version) {
+        Set<String> available = new TreeSet<>();
+        collectVersions(Paths.get(""), available);
+        collectVersions(CacheLayout.librariesDir(), available);
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(ARCHIVES_DIR, "*.zip")) {
+            for (Path archive : archives) {
+                String name = archive.getFileName().toString();
+                available.add(name.substring(0, name.length() - 4));
+            }
+        } catch (IOException e) {
+            // No archives
+        }
+        available.removeIf(candidate -> !VERSION.matcher(candidate).matches());
+
+        String closest = null;
+        for (String candidate : available) {
+            // The newest release of the same major and minor version is the most likely to fit
+            if (majorMinor(candidate).equals(majorMinor(version))
+                    && (closest == null || compare(candidate, closest) > 0)) {
+                closest = candidate;
+            }
+        }
+        return closest != null ? closest : DEFAULT_VERSION;
+    }
+
+    private static void collectVersions(Path directory, Set<String> versions) {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory.toAbsolutePath(), Files::isDirectory)) {
+            for (Path child : children) {
+                versions.add(child.getFileName().toString());
+            }
+        } catch (IOException e) {
+            // Nothing there
+        }
+    }
+
+    private static String majorMinor(String version) {
+        String[] parts = version.split("\\.");
+        return parts[0] + "." + parts[1];
+    }
+
+    private static int compare(String left, String right) {
+        String[] leftParts = left.split("\\.");
+        String[] rightParts = right.split("\\.");
+        for (int i = 0; i < Math.max(leftParts.length, rightParts.length); i++) {
+            long leftPart = i < leftParts.length ? Long.parseLong(leftParts[i]) : 0;
+            long rightPart = i < rightParts.length ? Long.parseLong(rightParts[i]) : 0;
+            if (leftPart != rightPart) {
+                return Long.compare(leftPart, rightPart);
+            }
+        }
+        return 0;
+    }
+
+    // The archive of the set in a temp file, null when it could not be downloaded
+    private static Path download(String version) {
+        String url = DOWNLOAD_URL.replace("{version}", version);
+        System.out.println("Downloading client libraries from " + url);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(CacheLayout.tempDir());
+            tempFile = Files.createTempFile(CacheLayout.tempDir(), "libraries-", ".zip");
+            HttpResponse<InputStream> response = LauncherHttpClient.send(LauncherHttpClient.client(false),
+                    LauncherHttpClient.request(url).build());
+            if (response.statusCode() != 200) {
+                LauncherHttpClient.discard(response);
+                throw new IOException("Server returned HTTP " + response.statusCode() + " for " + url);
+            }
+            try (InputStream in = LauncherHttpClient.body(response)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return tempFile;
+        } catch (IOException e) {
+            System.err.println("Could not get the client libraries for version " + version + ": " + e.getMessage());
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException deleteFailed) {
+                    // Cleared with the temp folder
+                }
+            }
+            return null;
+        }
+    }
+
+    // Unpacked into a temporary folder that is renamed into place, a set folder is always complete
+    private static void unpack(Path archive, String version, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        deleteStaleTemps();
+        Path tempDir = target.resolveSibling(version + "." + ProcessHandle.current().pid() + ".tmp");
+        deleteRecursively(tempDir);
+        int count = 0;
+        try {
+            Files.createDirectories(tempDir);
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                // Archives made by zipping the version folder itself hold everything below "<version>/"
+                String prefix = version + "/";
+                boolean nested = zip.stream().allMatch(entry -> entry.getName().startsWith(prefix));
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = nested ? entry.getName().substring(prefix.length()) : entry.getName();
+                    if (entry.isDirectory() || name.isEmpty()) {
+                        continue;
+                    }
+                    Path file = tempDir.resolve(name).normalize();
+                    if (!file.startsWith(tempDir)) {
+                        throw new IOException("Library archive " + archive + " has an entry outside of it: " + entry.getName());
+                    }
+                    Files.createDirectories(file.getParent());
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        Files.copy(in, file);
+                    }
+                    count++;
+                }
+            }
+            Files.move(tempDir, target, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Unpacked " + count + " files of the " + version + " client libraries to " + target);
+        } catch (IOException e) {
+            deleteRecursively(tempDir);
+            if (Files.isDirectory(target)) {
+                return; // Another launcher unpacked the same set meanwhile
+            }
+            throw e;
+        }
+    }
+
+    private static void remember(String entryId, String version) {
+        Map<String, String> versions = readVersions();
+        if (!version.equals(versions.put(USER + "|" + entryId, version))) {
+            writeVersions(versions);
+        }
+    }
+
+    private static void prune(Set<String> entryIds) {
+        try (CacheLock lock = CacheLock.acquire("libraries")) {
+            pruneLocked(entryIds);
+        } catch (IOException e) {
+            System.err.println("Could not prune the client libraries: " + e.getMessage());
+        }
+    }
+
+    private static void pruneLocked(Set<String> entryIds) {
+        Map<String, String> versions = readVersions();
+        // Entries of the other users of the cache are theirs to retain
+        if (versions.keySet().removeIf(key -> key.startsWith(USER + "|")
+                && !entryIds.contains(key.substring(USER.length() + 1)))) {
+            writeVersions(versions);
+        }
+        Set<String> needed = new HashSet<>(versions.values());
+        needed.add(DEFAULT_VERSION);
+        deleteStaleTemps();
+        try (DirectoryStream<Path> sets = Files.newDirectoryStream(CacheLayout.librariesDir(), Files::isDirectory)) {
+            for (Path set : sets) {
+                String name = set.getFileName().toString();
+                if (VERSION.matcher(name).matches() && !needed.contains(name)) {
+                    deleteUnlessHeld(name, set);
+                }
+            }
+        } catch (IOException e) {
+            // No sets unpacked yet
+        }
+    }
+
+    // Applications of this or another launcher may still run from a set their entry no longer uses
+    private static void deleteUnlessHeld(String name, Path set) {
+        synchronized (HOLDS) {
+            if (HOLDS.containsKey(name)) {
+                return; // Deleted by a later prune, once the applications have exited
+            }
+            try (FileChannel channel = openHold(name); FileLock lock = channel.tryLock()) {
+                if (lock == null) {
+                    return; // Held by another launcher
+                }
+                System.out.println("No entry uses the " + name + " client libraries any more, deleting " + set);
+                deleteRecursively(set);
+            } catch (IOException e) {
+                System.err.println("Could not check whether the " + name + " client libraries are in use: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean hold(String name) {
+        synchronized (HOLDS) {
+            Hold hold = HOLDS.get(name);
+            if (hold == null) {
+                FileChannel channel = null;
+                try {
+                    channel = openHold(name);
+                    // Only waits while a prune of another launcher checks the set
+                    hold = new Hold(channel, channel.lock(0, Long.MAX_VALUE, true));
+                } catch (IOException e) {
+                    System.err.println("Could not mark the " + name + " client libraries as in use: " + e.getMessage());
+                    closeQuietly(channel);
+                    return false;
+                }
+                HOLDS.put(name, hold);
+            }
+            hold.uses++;
+            return true;
+        }
+    }
+
+    private static void release(String name) {
+        synchronized (HOLDS) {
+            Hold hold = HOLDS.get(name);
+            if (hold == null || --hold.uses > 0) {
+                return;
+            }
+            HOLDS.remove(name);
+            try {
+                hold.lock.release();
+            } catch (IOException e) {
+                // Released with the channel
+            }
+            closeQuietly(hold.channel);
+        }
+    }
+
+    private static FileChannel openHold(String name) throws IOException {
+        Files.createDirectories(CacheLayout.locksDir());
+        return FileChannel.open(CacheLayout.locksDir().resolve("library-" + name + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    // user|entryId|version, keyed by user|entryId
+    private static Map<String, String> readVersions() {
+        Map<String, String> versions = new LinkedHashMap<>();
+        Path file = CacheLayout.librariesDir().resolve(VERSIONS_FILE);
+        if (!Files.exists(file)) {
+            return versions;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int separator = line.lastIndexOf('|');
+                if (separator > 0 && line.indexOf('|') < separator) {
+                    versions.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read library versions " + file + ": " + e.getMessage());
+        }
+        return versions;
+    }
+
+    private static void writeVersions(Map<String, String> versions) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> version : versions.entrySet()) {
+            lines.add(version.getKey() + "|" + version.getValue());
+        }
+        Path file = CacheLayout.librariesDir().resolve(VERSIONS_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save library versions " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Folders of launchers that died while unpacking
+    private static void deleteStaleTemps() {
+        long cutoff = System.currentTimeMillis() - TEMP_MAX_AGE_MILLIS;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(CacheLayout.librariesDir(), "*.tmp")) {
+            for (Path temp : temps) {
+                if (Files.isDirectory(temp) && Files.getLastModifiedTime(temp).toMillis() < cutoff) {
+                    deleteRecursively(temp);
+                }
+            }
+        } catch (IOException e) {
+            // No sets unpacked yet
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    // Left for the next prune
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+
+    // A shared lock on a set, counted by the applications of this launcher that use it
+    private static class Hold {
+        final FileChannel channel;
+        final FileLock lock;
+        int uses;
+
+        Hold(FileChannel channel, FileLock lock) {
+            this.channel = channel;
+            this.lock = lock;
+        }
+    }
+}
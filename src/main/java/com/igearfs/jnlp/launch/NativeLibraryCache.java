@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Native libraries of {@code <nativelib>} JARs, extracted under jnlp_cache/_natives.
+ *
+ * Every JAR is extracted once into a folder named after its content hash, which launches then put
+ * on java.library.path as is. A folder is complete the moment it exists: extraction goes to a
+ * temporary folder that is renamed into place, and a folder is never written again afterwards, so a
+ * running application holding its libraries open is never in the way of another launch.
+ */
+public class NativeLibraryCache {
+
+    private static final long TEMP_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The folders holding the extracted libraries of {@code jars} (downloaded to {@code paths}, same
+     * order), extracting the JARs that were not extracted before.
+     */
+    public static List<Path> extract(List<JarResource> jars, List<Path> paths) throws IOException {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (int i = 0; i < paths.size(); i++) {
+            // Content hashes are known from the download, a JAR is only hashed here when its index entry is gone
+            CacheIndex.Entry entry = CacheIndex.get().lookup(jars.get(i).getUrl());
+            String sha256 = entry != null && entry.getSha256() != null ? entry.getSha256() : DigestUtil.sha256Hex(paths.get(i));
+            Path directory = CacheLayout.nativesDir().resolve(sha256);
+            if (!Files.isDirectory(directory)) {
+                extractInto(paths.get(i), directory);
+            }
+            directories.add(directory);
+        }
+        return new ArrayList<>(directories);
+    }
+
+    private static void extractInto(Path jar, Path directory) throws IOException {
+        Files.createDirectories(directory.getParent());
+        deleteStaleTemps();
+        Path tempDir = directory.resolveSibling(directory.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        int count = 0;
+        deleteRecursively(tempDir); // Left by an earlier launcher with the same pid
+        try {
+            Files.createDirectories(tempDir);
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || entry.getName().toUpperCase(Locale.ROOT).startsWith("META-INF/")) {
+                        continue;
+                    }
+                    Path target = tempDir.resolve(entry.getName()).normalize();
+                    if (!target.startsWith(tempDir)) {
+                        throw new IOException("Native library JAR " + jar + " has an entry outside of it: " + entry.getName());
+                    }
+                    Files.createDirectories(target.getParent());
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        Files.copy(in, target);
+                    }
+                    count++;
+                }
+            }
+            Files.move(tempDir, directory, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Extracted " + count + " native libraries of " + jar.getFileName() + " to " + directory);
+        } catch (IOException e) {
+            deleteRecursively(tempDir);
+            if (Files.isDirectory(directory)) {
+                return; // Another launcher extracted the same JAR meanwhile, its folder holds the same files
+            }
+            throw e;
+        }
+    }
+
+    // Folders of launchers that died while extracting
+    private static void deleteStaleTemps() {
+        long cutoff = System.currentTimeMillis() - TEMP_MAX_AGE_MILLIS;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(CacheLayout.nativesDir(), "*.tmp")) {
+            for (Path temp : temps) {
+                if (Files.getLastModifiedTime(temp).toMillis() < cutoff) {
+                    deleteRecursively(temp);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up native library folders: " + e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    // Left for the next clean up
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.module.ModuleReader;
+import java.lang.module.ResolvedModule;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Main class of an idle JVM in the JvmPool. Like LazyPartClassLoader it runs in the child and must
+ * not use any other launcher class, JvmPool packs it alone into a bootstrap JAR.
+ *
+ * The JVM starts with the JavaFX modules and the shared libraries on its classpath, loads the JavaFX
+ * classes and opens every library JAR, then connects to the launcher on the loopback port given as
+ * argument and waits. The launcher sends the application classpath, main class and arguments; the
+ * application then runs in this JVM exactly like it would after a cold start.
+ *
+ * An instance is the class loader of the application JARs. It looks in them first, so they win over
+ * the shared libraries the same way they did when they came first on -cp. Packages of the JDK and
+ * JavaFX modules come from the modules, which is where a cold start finds them even when a client
+ * JAR bundles its own copy (javax.xml, org.w3c.dom, ...). Resources follow the same order.
+ */
+public class PooledJvmMain extends URLClassLoader {
+
+    public static final String TOKEN_ENV = "JNLP_POOL_TOKEN";
+    public static final String ID_ENV = "JNLP_POOL_ID";
+
+    private static final Set<String> MODULE_PACKAGES = modulePackages();
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    public PooledJvmMain(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    public static void main(String[] args) throws Throwable {
+        warmUp();
+
+        List<URL> classpath = new ArrayList<>();
+        List<String> appClasspath = new ArrayList<>();
+        List<String> appArgs = new ArrayList<>();
+        String mainClass = null;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println("ready " + System.getenv(ID_ENV) + " " + System.getenv(TOKEN_ENV));
+
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("go")) {
+                int separator = line.indexOf(' ');
+                String value = separator < 0 ? "" : unescape(line.substring(separator + 1));
+                switch (separator < 0 ? line : line.substring(0, separator)) {
+                    case "classpath":
+                        classpath.add(Paths.get(value).toUri().toURL());
+                        appClasspath.add(value);
+                        break;
+                    case "main":
+                        mainClass = value;
+                        break;
+                    case "arg":
+                        appArgs.add(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (line == null || mainClass == null) {
+                // Retired by the launcher, or the launcher is gone
+                System.exit(0);
+            }
+            out.println("started");
+        }
+
+        // Applications that read their own classpath see the one they would have had after a cold start
+        appClasspath.add(System.getProperty("java.class.path"));
+        System.setProperty("java.class.path", String.join(File.pathSeparator, appClasspath));
+
+        PooledJvmMain loader = new PooledJvmMain(classpath.toArray(new URL[0]), ClassLoader.getSystemClassLoader());
+        Thread.currentThread().setContextClassLoader(loader);
+        Method main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+        try {
+            main.invoke(null, (Object) appArgs.toArray(new String[0]));
+        } catch (InvocationTargetException e) {
+            throw e.getCause(); // Reported by the JVM like an exception thrown by a real main method
+        }
+    }
+
+    // Work a cold start would do before the application's main class runs
+    private static void warmUp() {
+        // A class that does not exist makes the class loader open and index every JAR on the classpath
+        try {
+            Class.forName("com.igearfs.jnlp.launch.PooledJvmWarmUp");
+        } catch (ClassNotFoundException expected) {
+            // Expected
+        }
+
+        // Define the JavaFX classes (without initializing them, the application starts the toolkit itself)
+        for (ResolvedModule module : ModuleLayer.boot().configuration().modules()) {
+            if (!module.name().startsWith("javafx.")) {
+                continue;
+            }
+            Module runtimeModule = ModuleLayer.boot().findModule(module.name()).orElse(null);
+            try (ModuleReader reader = module.reference().open()) {
+                reader.list().forEach(name -> {
+                    if (name.endsWith(".class") && !name.equals("module-info.class") && runtimeModule != null) {
+                        try {
+                            Class.forName(runtimeModule, name.substring(0, name.length() - 6).replace('/', '.'));
+                        } catch (LinkageError e) {
+                            // Depends on something that is not there, the application will not need it either
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Could not preload " + module.name() + ": " + e.getMessage());
+            }
+        }
+
+        // The shared libraries are much larger, loading all of their classes is opt-in
+        if (Boolean.getBoolean("jnlp.pool.preloadLibraries")) {
+            ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+            for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                if (!path.endsWith(".jar")) {
+                    continue;
+                }
+                try (JarFile jar = new JarFile(path)) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+                            try {
+                                Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, systemLoader);
+                            } catch (ClassNotFoundException | LinkageError e) {
+                                // Optional dependency missing
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not preload " + path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> type = findLoadedClass(name);
+            int lastDot = name.lastIndexOf('.');
+            if (type == null && !MODULE_PACKAGES.contains(lastDot < 0 ? "" : name.substring(0, lastDot))) {
+                try {
+                    type = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    // Not in the application JARs
+                }
+            }
+            if (type == null) {
+                return super.loadClass(name, resolve);
+            }
+            if (resolve) {
+                resolveClass(type);
+            }
+            return type;
+        }
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (MODULE_PACKAGES.contains(resourcePackage(name))) {
+            return super.getResource(name);
+        }
+        URL resource = findResource(name);
+        return resource != null ? resource : super.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        List<URL> own = Collections.list(findResources(name));
+        List<URL> parent = Collections.list(getParent().getResources(name));
+        List<URL> resources = new ArrayList<>(own.size() + parent.size());
+        if (MODULE_PACKAGES.contains(resourcePackage(name))) {
+            resources.addAll(parent);
+            resources.addAll(own);
+        } else {
+            resources.addAll(own);
+            resources.addAll(parent);
+        }
+        return Collections.enumeration(resources);
+    }
+
+    // Packages of the named modules this JVM started with, the JDK's and JavaFX
+    private static Set<String> modulePackages() {
+        Set<String> packages = new HashSet<>();
+        for (Module module : ModuleLayer.boot().modules()) {
+            packages.addAll(module.getPackages());
+        }
+        return packages;
+    }
+
+    private static String resourcePackage(String resourceName) {
+        int lastSlash = resourceName.lastIndexOf('/');
+        return lastSlash < 0 ? "" : resourceName.substring(0, lastSlash).replace('/', '.');
+    }
+
+    // Arguments travel one per line
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
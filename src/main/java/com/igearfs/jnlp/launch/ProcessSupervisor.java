@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of every application JVM the launcher started: which entry it belongs to, how long it
+ * runs, how much CPU and memory it uses, and how it exited.
+ *
+ * The output of a child (stdout and stderr merged) is copied to the launcher's console by a pooled
+ * daemon thread, which returns to the pool when the child exits. The last lines are kept per child.
+ */
+public class ProcessSupervisor {
+
+    private static final int MAX_EXITED = 50; // Exited children kept for the overview
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+    private static final boolean PROC_FS = Files.isDirectory(Paths.get("/proc/self"));
+
+    private static final List<ChildProcess> CHILDREN = new ArrayList<>(); // Guarded by itself, in start order
+
+    // Reading a stream blocks, so a reader needs a thread for the lifetime of its child; idle threads are reused
+    private static final AtomicInteger READER_COUNT = new AtomicInteger();
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "child-output-" + READER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts tracking a child. The ProcessBuilder must have merged stderr into stdout
+     * ({@code redirectErrorStream(true)}) and must not redirect stdout anywhere else.
+     */
+    public static ChildProcess register(String entryId, String entryName, Process process) {
+        return register(entryId, entryName, process, process.info().startInstant().orElse(Instant.now()));
+    }
+
+    // A pooled JVM ran before it got the application, the application started when it was handed over
+    static ChildProcess register(String entryId, String entryName, Process process, Instant startTime) {
+        ChildProcess child = new ChildProcess(entryId, entryName, process, startTime);
+        synchronized (CHILDREN) {
+            CHILDREN.add(child);
+        }
+        READERS.submit(() -> copyOutput(child));
+        process.onExit().thenAccept(exited -> {
+            child.exited(exited.exitValue());
+            System.out.println(entryName + " (pid " + child.getPid() + ") exited with code " + exited.exitValue());
+            trimExited();
+        });
+        return child;
+    }
+
+    /**
+     * Every tracked child, running and recently exited, oldest first, with CPU time and resident
+     * memory sampled just now. Cheap enough to call every few seconds.
+     */
+    public static List<ChildProcess> snapshot() {
+        List<ChildProcess> children;
+        synchronized (CHILDREN) {
+            children = new ArrayList<>(CHILDREN);
+        }
+        List<Long> alive = new ArrayList<>();
+        for (ChildProcess child : children) {
+            if (child.isAlive() && !child.isInProcess()) {
+                alive.add(child.getPid());
+            }
+        }
+        Map<Long, Long> resident = residentBytes(alive);
+        for (ChildProcess child : children) {
+            if (child.isAlive()) {
+                child.sampled(child.getProcess().info().totalCpuDuration().orElse(null),
+                        resident.getOrDefault(child.getPid(), -1L));
+            }
+        }
+        return children;
+    }
+
+    // The running children of one entry
+    public static List<ChildProcess> running(String entryId) {
+        List<ChildProcess> running = new ArrayList<>();
+        synchronized (CHILDREN) {
+            for (ChildProcess child : CHILDREN) {
+                if (child.isAlive() && child.getEntryId().equals(entryId)) {
+                    running.add(child);
+                }
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Waits until every running child exited, for callers that exit right after launching.
+     */
+    public static void awaitExit() throws InterruptedException {
+        List<ChildProcess> children;
+        synchronized (CHILDREN) {
+            children = new ArrayList<>(CHILDREN);
+        }
+        for (ChildProcess child : children) {
+            child.getProcess().waitFor();
+        }
+    }
+
+    public static void clearExited() {
+        synchronized (CHILDREN) {
+            CHILDREN.removeIf(child -> !child.isAlive());
+        }
+    }
+
+    private static void trimExited() {
+        synchronized (CHILDREN) {
+            int exited = 0;
+            for (ChildProcess child : CHILDREN) {
+                if (!child.isAlive()) {
+                    exited++;
+                }
+            }
+            for (Iterator<ChildProcess> it = CHILDREN.iterator(); it.hasNext() && exited > MAX_EXITED; ) {
+                if (!it.next().isAlive()) {
+                    it.remove();
+                    exited--;
+                }
+            }
+        }
+    }
+
+    private static void copyOutput(ChildProcess child) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(child.getProcess().getInputStream(),
+                Charset.defaultCharset()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+                child.addOutput(line);
+            }
+        } catch (IOException e) {
+            // The stream closes when the child exits
+        }
+    }
+
+    /**
+     * Resident set size per pid. Linux reads /proc, Windows asks tasklist and everything else ps,
+     * once for all pids. Pids that could not be measured are missing from the map.
+     */
+    private static Map<Long, Long> residentBytes(List<Long> pids) {
+        Map<Long, Long> resident = new HashMap<>();
+        if (pids.isEmpty()) {
+            return resident;
+        }
+        if (PROC_FS) {
+            for (long pid : pids) {
+                try {
+                    for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+                        if (line.startsWith("VmRSS:")) {
+                            resident.put(pid, Long.parseLong(line.replaceAll("\\D", "")) * 1024); // In kB
+                            break;
+                        }
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    // Exited in the meantime
+                }
+            }
+        } else if (WINDOWS) {
+            // "java.exe","1234","Console","1","123,456 K"
+            Set<Long> wanted = new HashSet<>(pids);
+            for (String line : run("tasklist", "/FO", "CSV", "/NH")) {
+                String[] fields = line.split("\",\"");
+                if (fields.length >= 5) {
+                    try {
+                        long pid = Long.parseLong(fields[1]);
+                        if (wanted.contains(pid)) {
+                            resident.put(pid, Long.parseLong(fields[4].replaceAll("\\D", "")) * 1024);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Header or localized oddity, skip the line
+                    }
+                }
+            }
+        } else {
+            StringJoiner list = new StringJoiner(",");
+            pids.forEach(pid -> list.add(String.valueOf(pid)));
+            for (String line : run("ps", "-o", "pid=,rss=", "-p", list.toString())) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length == 2) {
+                    try {
+                        resident.put(Long.parseLong(fields[0]), Long.parseLong(fields[1]) * 1024); // In kB
+                    } catch (NumberFormatException e) {
+                        // Not a process line
+                    }
+                }
+            }
+        }
+        return resident;
+    }
+
+    private static List<String> run(String... command) {
+        List<String> lines = new ArrayList<>();
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not run " + command[0] + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.launch;
+
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.model.JnlpDescriptor;
+import com.igearfs.jnlp.model.PackageResource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Builds the complete resource list of an application: the JARs of the main descriptor plus
+ * those of every {@code <extension>} it references, directly or through other extensions.
+ *
+ * Extensions are resolved level by level and all descriptors of one level are fetched at once,
+ * so a deployment costs one round trip per nesting depth. Every descriptor is loaded only once,
+ * which also ends reference cycles, and a JAR shared by several descriptors is downloaded once.
+ */
+public class ResourceResolver {
+
+    /**
+     * The merged resources of a descriptor and its extensions.
+     */
+    public static class Resources {
+        private final List<JarResource> jars;
+        private final List<PackageResource> packages;
+
+        Resources(List<JarResource> jars, List<PackageResource> packages) {
+            this.jars = Collections.unmodifiableList(jars);
+            this.packages = Collections.unmodifiableList(packages);
+        }
+
+        public List<JarResource> getJars() {
+            return jars;
+        }
+
+        public List<PackageResource> getPackages() {
+            return packages;
+        }
+    }
+
+    public static Resources resolve(HttpClient client, JnlpDescriptor descriptor) throws IOException {
+        Map<String, JarResource> jars = new LinkedHashMap<>(); // By URL, descriptor order
+        List<PackageResource> packages = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        visited.add(normalize(descriptor.getUrl()));
+
+        addResources(descriptor, true, jars, packages);
+        List<String> level = unvisited(descriptor, visited);
+        for (int depth = 1; !level.isEmpty(); depth++) {
+            System.out.println("Resolving " + level.size() + " extension descriptor(s) at depth " + depth);
+            List<String> next = new ArrayList<>();
+            for (JnlpDescriptor extension : loadAll(client, level)) {
+                addResources(extension, false, jars, packages);
+                next.addAll(unvisited(extension, visited));
+            }
+            level = next;
+        }
+        return new Resources(new ArrayList<>(jars.values()), packages);
+    }
+
+    // Fetches every descriptor of one level concurrently, the result keeps the order of the level
+    private static List<JnlpDescriptor> loadAll(HttpClient client, List<String> urls) throws IOException {
+        Map<String, CompletableFuture<JnlpDescriptor>> pending = new LinkedHashMap<>();
+        for (String url : urls) {
+            pending.put(url, DescriptorCache.loadAsync(client, url));
+        }
+
+        List<JnlpDescriptor> descriptors = new ArrayList<>();
+        try {
+            for (Map.Entry<String, CompletableFuture<JnlpDescriptor>> entry : pending.entrySet()) {
+                try {
+                    descriptors.add(entry.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                    throw new IOException("Could not load extension " + entry.getKey() + ": " + cause.getMessage(), cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading extensions");
+        } finally {
+            for (CompletableFuture<JnlpDescriptor> future : pending.values()) {
+                future.cancel(true);
+            }
+        }
+        return descriptors;
+    }
+
+    private static void addResources(JnlpDescriptor descriptor, boolean main, Map<String, JarResource> jars,
+                                     List<PackageResource> packages) {
+        for (JarResource jar : descriptor.getJars()) {
+            if (!main && jar.getPart() != null) {
+                jar = new JarResource(jar.getUrl(), jar.getSha256(), jar.getVersion(), jar.isLazy(),
+                        qualifiedPart(descriptor, jar.getPart()), jar.isNativeLib());
+            }
+            JarResource known = jars.get(jar.getUrl());
+            if (known == null || (known.isLazy() && !jar.isLazy())) {
+                // Shared JARs are fetched once, eagerly as soon as any descriptor needs them at startup
+                jars.put(jar.getUrl(), jar);
+            }
+        }
+        for (PackageResource packageResource : descriptor.getPackages()) {
+            packages.add(main ? packageResource : new PackageResource(packageResource.getName(),
+                    qualifiedPart(descriptor, packageResource.getPart()), packageResource.isRecursive()));
+        }
+    }
+
+    // Extensions not seen before, a descriptor referenced twice (or in a cycle) is loaded only once
+    private static List<String> unvisited(JnlpDescriptor descriptor, Set<String> visited) {
+        List<String> urls = new ArrayList<>();
+        for (String url : descriptor.getExtensions()) {
+            if (visited.add(normalize(url))) {
+                urls.add(url);
+            } else {
+                System.out.println("Extension already resolved, skipping: " + url);
+            }
+        }
+        return urls;
+    }
+
+    // Part names are local to their descriptor, so those of extensions are prefixed with its URL
+    private static String qualifiedPart(JnlpDescriptor descriptor, String part) {
+        return descriptor.getUrl() + "#" + part;
+    }
+
+    private static String normalize(String url) {
+        try {
+            return URI.create(url).normalize().toString();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
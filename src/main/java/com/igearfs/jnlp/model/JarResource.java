@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.model;
+
+import java.util.Objects;
+
+// One <jar> or <nativelib> of a JNLP descriptor, resolved to an absolute URL
+public class JarResource {
+    private final String url;
+    private final String sha256; // Lowercase hex as declared by the server, null when unknown
+    private final String version; // JNLP version string of the <jar>, null when the JAR is not versioned
+    private final boolean lazy; // download="lazy", not needed to start the application
+    private final String part; // Name of the part the JAR belongs to, null when it has none
+    private final boolean nativeLib; // <nativelib>, holds native libraries instead of classes
+
+    public JarResource(String url, String sha256, String version, boolean lazy, String part, boolean nativeLib) {
+        this.url = url;
+        this.sha256 = sha256;
+        this.version = version == null || version.isBlank() ? null : version.trim();
+        this.lazy = lazy;
+        this.part = part == null || part.isBlank() ? null : part.trim();
+        this.nativeLib = nativeLib;
+    }
+
+    public JarResource(String url, String sha256, String version, boolean lazy, String part) {
+        this(url, sha256, version, lazy, part, false);
+    }
+
+    public JarResource(String url, String sha256, String version) {
+        this(url, sha256, version, false, null);
+    }
+
+    public JarResource(String url, String sha256) {
+        this(url, sha256, null);
+    }
+
+    public JarResource(String url) {
+        this(url, null);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public String getPart() {
+        return part;
+    }
+
+    public boolean isNativeLib() {
+        return nativeLib;
+    }
+
+    @Override
+    public String toString() {
+        return "JarResource{" +
+                "url='" + url + '\'' +
+                ", sha256='" + sha256 + '\'' +
+                ", version='" + version + '\'' +
+                ", lazy=" + lazy +
+                ", part='" + part + '\'' +
+                ", nativeLib=" + nativeLib +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(url, sha256, version, lazy, part, nativeLib);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        JarResource that = (JarResource) obj;
+        return Objects.equals(url, that.url) &&
+                Objects.equals(sha256, that.sha256) &&
+                Objects.equals(version, that.version) &&
+                lazy == that.lazy &&
+                Objects.equals(part, that.part) &&
+                nativeLib == that.nativeLib;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One parsed JNLP file (an application or an extension), with every href already resolved to an absolute URL.
+ */
+public class JnlpDescriptor {
+    private final String url;
+    private final String sha256; // Hash of the raw descriptor bytes
+    private final String title;
+    private final String mainClass; // null for extensions (component-desc)
+    private final List<String> arguments;
+    private final List<JarResource> jars;
+    private final List<PackageResource> packages;
+    private final List<String> extensions;
+    private final JvmProfile jvmProfile; // Heap sizes and java-vm-args of the <java>/<j2se> element
+    private final String serverVersion; // Version of the server that generated it (like Mirth's 4.5.2), null when unknown
+
+    public JnlpDescriptor(String url, String sha256, String title, String mainClass, List<String> arguments,
+                          List<JarResource> jars, List<PackageResource> packages, List<String> extensions,
+                          JvmProfile jvmProfile, String serverVersion) {
+        this.url = url;
+        this.sha256 = sha256;
+        this.title = title;
+        this.mainClass = mainClass;
+        this.arguments = Collections.unmodifiableList(arguments);
+        this.jars = Collections.unmodifiableList(jars);
+        this.packages = Collections.unmodifiableList(packages);
+        this.extensions = Collections.unmodifiableList(extensions);
+        this.jvmProfile = jvmProfile == null ? JvmProfile.EMPTY : jvmProfile;
+        this.serverVersion = serverVersion;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    public List<JarResource> getJars() {
+        return jars;
+    }
+
+    public List<PackageResource> getPackages() {
+        return packages;
+    }
+
+    public List<String> getExtensions() {
+        return extensions;
+    }
+
+    public JvmProfile getJvmProfile() {
+        return jvmProfile;
+    }
+
+    public String getServerVersion() {
+        return serverVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "JnlpDescriptor{" +
+                "url='" + url + '\'' +
+                ", title='" + title + '\'' +
+                ", mainClass='" + mainClass + '\'' +
+                ", serverVersion='" + serverVersion + '\'' +
+                ", jars=" + jars.size() +
+                ", extensions=" + extensions.size() +
+                '}';
+    }
+}
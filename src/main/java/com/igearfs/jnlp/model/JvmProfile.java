@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.model;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Settings for the JVM an application runs in. A JNLP declares heap sizes and VM arguments on its
+ * {@code <java>}/{@code <j2se>} element; a LaunchEntry can override any of them and also choose the
+ * garbage collector and the JavaFX rendering pipeline. Unset values are null.
+ */
+public class JvmProfile {
+
+    public static final JvmProfile EMPTY = new JvmProfile(null, null, null, null, null);
+
+    public static final String RENDERING_SOFTWARE = "software";
+    public static final String RENDERING_HARDWARE = "hardware";
+
+    private final String initialHeapSize; // e.g. 256m
+    private final String maxHeapSize;     // e.g. 2g
+    private final String garbageCollector; // G1, Parallel, Serial or ZGC
+    private final String rendering;        // RENDERING_SOFTWARE or RENDERING_HARDWARE
+    private final String vmArgs;           // Extra flags, whitespace separated
+
+    public JvmProfile(String initialHeapSize, String maxHeapSize, String garbageCollector, String rendering, String vmArgs) {
+        this.initialHeapSize = blankToNull(initialHeapSize);
+        this.maxHeapSize = blankToNull(maxHeapSize);
+        this.garbageCollector = blankToNull(garbageCollector);
+        this.rendering = blankToNull(rendering);
+        this.vmArgs = blankToNull(vmArgs);
+    }
+
+    public String getInitialHeapSize() {
+        return initialHeapSize;
+    }
+
+    public String getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    public String getGarbageCollector() {
+        return garbageCollector;
+    }
+
+    public String getRendering() {
+        return rendering;
+    }
+
+    public String getVmArgs() {
+        return vmArgs;
+    }
+
+    public boolean isEmpty() {
+        return equals(EMPTY);
+    }
+
+    /**
+     * This profile with every value {@code overrides} sets replaced. VM arguments are appended,
+     * so a flag given by both ends up with the value of {@code overrides}.
+     */
+    public JvmProfile overriddenBy(JvmProfile overrides) {
+        String args = vmArgs == null ? overrides.vmArgs
+                : overrides.vmArgs == null ? vmArgs : vmArgs + " " + overrides.vmArgs;
+        return new JvmProfile(
+                overrides.initialHeapSize != null ? overrides.initialHeapSize : initialHeapSize,
+                overrides.maxHeapSize != null ? overrides.maxHeapSize : maxHeapSize,
+                overrides.garbageCollector != null ? overrides.garbageCollector : garbageCollector,
+                overrides.rendering != null ? overrides.rendering : rendering,
+                args);
+    }
+
+    /**
+     * Single token form used in jnlp_entries.txt and the launch caches, e.g. {@code xmx=2g&gc=G1}.
+     * It never contains '|' or line breaks.
+     */
+    public String encode() {
+        StringBuilder encoded = new StringBuilder();
+        append(encoded, "xms", initialHeapSize);
+        append(encoded, "xmx", maxHeapSize);
+        append(encoded, "gc", garbageCollector);
+        append(encoded, "rendering", rendering);
+        append(encoded, "args", vmArgs);
+        return encoded.toString();
+    }
+
+    public static JvmProfile decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return EMPTY;
+        }
+        String xms = null, xmx = null, gc = null, rendering = null, args = null;
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String value = URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            switch (pair.substring(0, separator)) {
+                case "xms":
+                    xms = value;
+                    break;
+                case "xmx":
+                    xmx = value;
+                    break;
+                case "gc":
+                    gc = value;
+                    break;
+                case "rendering":
+                    rendering = value;
+                    break;
+                case "args":
+                    args = value;
+                    break;
+                default:
+                    break; // Written by a newer version
+            }
+        }
+        return new JvmProfile(xms, xmx, gc, rendering, args);
+    }
+
+    private static void append(StringBuilder encoded, String key, String value) {
+        if (value != null) {
+            if (encoded.length() > 0) {
+                encoded.append('&');
+            }
+            encoded.append(key).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        JvmProfile that = (JvmProfile) obj;
+        return Objects.equals(initialHeapSize, that.initialHeapSize) && Objects.equals(maxHeapSize, that.maxHeapSize)
+                && Objects.equals(garbageCollector, that.garbageCollector) && Objects.equals(rendering, that.rendering)
+                && Objects.equals(vmArgs, that.vmArgs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(initialHeapSize, maxHeapSize, garbageCollector, rendering, vmArgs);
+    }
+
+    @Override
+    public String toString() {
+        return "JvmProfile{" + encode() + '}';
+    }
+}
@@ -9,7 +9,7 @@
 
 package com.igearfs.jnlp.model;
 
-// Simple LaunchEntry class to hold name, URL, note, ID, ignoreDomainValidation, and iconPath
+// Simple LaunchEntry class to hold name, URL, note, ID, ignoreDomainValidation, iconPath, JVM settings and launch mode
 public class LaunchEntry {
     private String id;
     private String name;
@@ -17,15 +17,25 @@ public class LaunchEntry {
     private String note;
     private boolean ignoreDomainValidation; // New field
     private String iconPath; // New field for the icon path
+    private JvmProfile jvmProfile; // Overrides the JVM settings of the JNLP, never null
+    private LaunchMode launchMode; // Never null
 
-    // Constructor with ignoreDomainValidation and iconPath
-    public LaunchEntry(String name, String url, String note, String id, boolean ignoreDomainValidation, String iconPath) {
+    // Constructor with all fields
+    public LaunchEntry(String name, String url, String note, String id, boolean ignoreDomainValidation, String iconPath,
+                       JvmProfile jvmProfile, LaunchMode launchMode) {
         this.id = id;
         this.name = name;
         this.url = url;
         this.note = note;
         this.ignoreDomainValidation = ignoreDomainValidation; // Store checkbox value
         this.iconPath = iconPath; // Store icon path
+        this.jvmProfile = jvmProfile == null ? JvmProfile.EMPTY : jvmProfile;
+        this.launchMode = launchMode == null ? LaunchMode.SEPARATE_JVM : launchMode;
+    }
+
+    // Constructor with ignoreDomainValidation and iconPath, in a separate JVM using the JVM settings of the JNLP
+    public LaunchEntry(String name, String url, String note, String id, boolean ignoreDomainValidation, String iconPath) {
+        this(name, url, note, id, ignoreDomainValidation, iconPath, JvmProfile.EMPTY, LaunchMode.SEPARATE_JVM);
     }
 
     // Constructor for older data (defaults ignoreDomainValidation to true and iconPath to "/rocket.png")
@@ -78,6 +88,22 @@ public class LaunchEntry {
         this.iconPath = iconPath;
     }
 
+    public JvmProfile getJvmProfile() {
+        return jvmProfile;
+    }
+
+    public void setJvmProfile(JvmProfile jvmProfile) {
+        this.jvmProfile = jvmProfile == null ? JvmProfile.EMPTY : jvmProfile;
+    }
+
+    public LaunchMode getLaunchMode() {
+        return launchMode;
+    }
+
+    public void setLaunchMode(LaunchMode launchMode) {
+        this.launchMode = launchMode == null ? LaunchMode.SEPARATE_JVM : launchMode;
+    }
+
     @Override
     public String toString() {
         return "LaunchEntry{" +
@@ -87,6 +113,8 @@ public class LaunchEntry {
                 ", note='" + note + '\'' +
                 ", ignoreDomainValidation=" + ignoreDomainValidation +
                 ", iconPath='" + iconPath + '\'' +
+                ", jvmProfile=" + jvmProfile +
+                ", launchMode=" + launchMode.getCode() +
                 '}';
     }
 }
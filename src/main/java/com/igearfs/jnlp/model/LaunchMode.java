@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.model;
+
+/**
+ * Where the application of an entry runs.
+ */
+public enum LaunchMode {
+
+    // A JVM of its own, with the heap, GC and flags of the JVM settings
+    SEPARATE_JVM("jvm", "Separate JVM"),
+
+    // Inside the launcher's JVM, sharing its JDK and JavaFX; JVM settings do not apply. JavaFX
+    // applications only: the entry dialog offers it once a launch plan shows the main class is one,
+    // and any other main class falls back to a separate JVM (see InProcessApp)
+    IN_PROCESS("in-process", "Launcher JVM");
+
+    private final String code;
+    private final String label;
+
+    LaunchMode(String code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    // The value stored with the entry
+    public String getCode() {
+        return code;
+    }
+
+    // Unknown or missing codes mean a separate JVM, like before there was a choice
+    public static LaunchMode fromCode(String code) {
+        for (LaunchMode mode : values()) {
+            if (mode.code.equals(code)) {
+                return mode;
+            }
+        }
+        return SEPARATE_JVM;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.model;
+
+import java.util.Objects;
+
+// One <package> of a JNLP descriptor: which part holds the classes of a package (or of a single class)
+public class PackageResource {
+    private final String name; // "com.example.Foo", "com.example.*"
+    private final String part;
+    private final boolean recursive;
+
+    public PackageResource(String name, String part, boolean recursive) {
+        this.name = name;
+        this.part = part;
+        this.recursive = recursive;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPart() {
+        return part;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    @Override
+    public String toString() {
+        return "PackageResource{" +
+                "name='" + name + '\'' +
+                ", part='" + part + '\'' +
+                ", recursive=" + recursive +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, part, recursive);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        PackageResource that = (PackageResource) obj;
+        return recursive == that.recursive &&
+                Objects.equals(name, that.name) &&
+                Objects.equals(part, that.part);
+    }
+}
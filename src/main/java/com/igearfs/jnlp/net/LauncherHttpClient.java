@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.net;
+
+import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.security.TrustStoreManager;
+
+import javax.net.ssl.*;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The one HTTP layer of the launcher: the JNLP fetch, every JAR fetch and the trust check share
+ * pooled HttpClients, so TLS connections are reused (and multiplexed over HTTP/2 where the server
+ * supports it) instead of handshaking once per file.
+ *
+ * Timeouts (seconds) can be changed with -Djnlp.http.connectTimeout and -Djnlp.http.readTimeout.
+ */
+public class LauncherHttpClient {
+
+    private static final String USER_AGENT = "Java JNLP Launcher";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(Long.getLong("jnlp.http.connectTimeout", 15));
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(Long.getLong("jnlp.http.readTimeout", 60));
+
+    // One client per hostname policy, rebuilt when the truststore changes
+    private static final Map<Boolean, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+    private static HttpClient trustAllClient; // Built on first use, guarded by the class
+
+    // Bodies currently being read, checked once a second for stalled reads
+    private static final Set<StallGuardInputStream> ACTIVE_STREAMS = ConcurrentHashMap.newKeySet();
+
+    static {
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-read-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (StallGuardInputStream stream : ACTIVE_STREAMS) {
+                stream.checkStall(now);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public static HttpClient client(LaunchEntry entry) {
+        return client(entry.isIgnoreDomainValidation());
+    }
+
+    public static HttpClient client(boolean ignoreDomainValidation) {
+        return CLIENTS.computeIfAbsent(ignoreDomainValidation, LauncherHttpClient::newClient);
+    }
+
+    /**
+     * Drops the pooled clients so the next request picks up the updated truststore.
+     */
+    public static void reset() {
+        CLIENTS.clear();
+    }
+
+    private static HttpClient newClient(boolean ignoreDomainValidation) {
+        try {
+            SSLContext sslContext;
+            if (ignoreDomainValidation) {
+                sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, withoutHostnameCheck(TrustStoreManager.loadTrustManagers()), new SecureRandom());
+            } else {
+                sslContext = SSLContext.getDefault();
+            }
+            return HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(CONNECT_TIMEOUT)
+                    .sslContext(sslContext)
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create HTTP client", e);
+        }
+    }
+
+    /**
+     * Client that accepts any certificate, only used to fetch the certificate the user is about to trust.
+     */
+    public static synchronized HttpClient trustAllClient() throws Exception {
+        if (trustAllClient != null) {
+            return trustAllClient;
+        }
+        TrustManager[] trustAllCertificates = new TrustManager[]{
+                new X509TrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                    }
+
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                    }
+                }
+        };
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustAllCertificates, new SecureRandom());
+        trustAllClient = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .sslContext(sslContext)
+                .build();
+        return trustAllClient;
+    }
+
+    public static HttpRequest.Builder request(String url) {
+        URI uri = URI.create(url);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .header("User-Agent", USER_AGENT)
+                .timeout(READ_TIMEOUT);
+        // h2c upgrade requests over plain http confuse some servers, HTTP/2 is only negotiated over TLS
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder;
+    }
+
+    // Text resources (JNLP descriptors) are worth compressing, JARs already are
+    public static HttpRequest.Builder compressedRequest(String url) {
+        return request(url).header("Accept-Encoding", "gzip");
+    }
+
+    public static HttpResponse<InputStream> send(HttpClient client, HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+        }
+    }
+
+    // Lets a caller put several requests on the wire at once, e.g. one level of extension descriptors
+    public static CompletableFuture<HttpResponse<InputStream>> sendAsync(HttpClient client, HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Body of the response, gunzipped when the server compressed it and guarded so that a
+     * stalled connection fails after the read timeout instead of hanging the launch.
+     */
+    public static InputStream body(HttpResponse<InputStream> response) throws IOException {
+        InputStream in = new StallGuardInputStream(response.body());
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            try {
+                return new GZIPInputStream(in, 65536);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Closes a response body that is not going to be read, so the connection returns to the pool.
+     */
+    public static void discard(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            // Nothing left to clean up
+        }
+    }
+
+    // Delegates every trust decision to the truststore but skips the host name identity check
+    private static TrustManager[] withoutHostnameCheck(TrustManager[] trustManagers) {
+        TrustManager[] wrapped = new TrustManager[trustManagers.length];
+        for (int i = 0; i < trustManagers.length; i++) {
+            if (trustManagers[i] instanceof X509TrustManager) {
+                X509TrustManager delegate = (X509TrustManager) trustManagers[i];
+                wrapped[i] = new X509ExtendedTrustManager() {
+                    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+                        delegate.checkClientTrusted(chain, authType);
+                    }
+
+                    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+                        delegate.checkServerTrusted(chain, authType);
+                    }
+
+                    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+                        delegate.checkClientTrusted(chain, authType);
+                    }
+
+                    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+                        delegate.checkServerTrusted(chain, authType);
+                    }
+
+                    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+                        delegate.checkClientTrusted(chain, authType);
+                    }
+
+                    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+                        delegate.checkServerTrusted(chain, authType);
+                    }
+
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return delegate.getAcceptedIssuers();
+                    }
+                };
+            } else {
+                wrapped[i] = trustManagers[i];
+            }
+        }
+        return wrapped;
+    }
+
+    /**
+     * HttpClient only times out until the response headers arrive. This stream lets the watchdog
+     * close the body under a read that blocks longer than the read timeout, which ends the read with
+     * an IOException, and reports it as a timeout. Threads are never interrupted: an interrupt would
+     * close the channel the body is copied through and look like a cancellation.
+     */
+    private static class StallGuardInputStream extends FilterInputStream {
+        private volatile boolean reading;
+        private volatile long readStartedAt;
+        private volatile boolean timedOut;
+
+        StallGuardInputStream(InputStream in) {
+            super(in);
+            ACTIVE_STREAMS.add(this);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            readStartedAt = System.nanoTime();
+            reading = true;
+            try {
+                if (timedOut) {
+                    throw timeout();
+                }
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                if (timedOut) {
+                    throw timeout(); // The body was closed by the watchdog
+                }
+                throw e;
+            } finally {
+                reading = false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ACTIVE_STREAMS.remove(this);
+            super.close();
+        }
+
+        void checkStall(long now) {
+            if (reading && !timedOut && now - readStartedAt > READ_TIMEOUT.toNanos()) {
+                timedOut = true;
+                try {
+                    close();
+                } catch (IOException e) {
+                    // The blocked read fails either way
+                }
+            }
+        }
+
+        private static HttpTimeoutException timeout() {
+            return new HttpTimeoutException("No data received for " + READ_TIMEOUT.getSeconds() + " seconds");
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.security;
+
+import com.igearfs.jnlp.cache.CacheIndex;
+import com.igearfs.jnlp.cache.CacheLayout;
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.KeyStore;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Checks that downloaded JARs are signed by a certificate chaining up to the JRE truststore.
+ *
+ * A JAR is TRUSTED when every entry carries a valid signature whose certificate path validates
+ * against the truststore (at the signature's timestamp when it has one). Verdicts are kept by content
+ * hash in jnlp_cache/jar_verdicts.txt, so the same bytes are verified once, whichever server they came
+ * from. They are tied to the trust anchors they were checked against and all dropped when the
+ * truststore changes. JARs without a verdict are verified in parallel, one per core.
+ *
+ * -Djnlp.verify=off skips all of this, warn (the default) reports JARs that are not TRUSTED, enforce
+ * refuses to launch them.
+ */
+public class JarVerifier {
+
+    public enum Mode { OFF, WARN, ENFORCE }
+
+    public enum Verdict {
+        TRUSTED,          // Every entry signed by a trusted signer
+        UNSIGNED,         // No signature at all
+        PARTIALLY_SIGNED, // Some entries are not covered by the signature
+        UNTRUSTED,        // Signed, but the certificate does not chain to the truststore
+        TAMPERED          // An entry does not match its signature
+    }
+
+    public static final Mode MODE = parseMode(System.getProperty("jnlp.verify", "warn"));
+
+    private static final String FORMAT = "1";
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService VERIFIERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "jar-verify-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final Map<String, String> VERDICTS = new ConcurrentHashMap<>(); // sha256 -> "VERDICT|signer"
+    private static Set<TrustAnchor> anchors; // Both loaded with the verdicts, guarded by the class
+    private static String anchorsKey;
+
+    /**
+     * Verifies the downloaded {@code paths} of {@code jars} (same order) and tells whether all of them
+     * are TRUSTED. Returns false right away when verification is off.
+     *
+     * @throws SecurityException in enforce mode, when one of them is not TRUSTED
+     */
+    public static boolean verify(List<JarResource> jars, List<Path> paths) throws IOException {
+        if (MODE == Mode.OFF) {
+            return false;
+        }
+        if (paths.isEmpty()) {
+            return true;
+        }
+        loadVerdicts();
+        Set<TrustAnchor> trustAnchors = trustAnchors();
+
+        // Content hashes are known from the download, a JAR is only hashed here when its index entry is gone
+        List<String> hashes = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            CacheIndex.Entry entry = CacheIndex.get().lookup(jars.get(i).getUrl());
+            hashes.add(entry != null && entry.getSha256() != null ? entry.getSha256() : DigestUtil.sha256Hex(paths.get(i)));
+        }
+
+        Map<String, Future<String>> pending = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            String sha256 = hashes.get(i);
+            Path path = paths.get(i);
+            if (!VERDICTS.containsKey(sha256) && !pending.containsKey(sha256)) {
+                pending.put(sha256, VERIFIERS.submit(() -> check(path, trustAnchors)));
+            }
+        }
+        if (!pending.isEmpty()) {
+            long start = System.nanoTime();
+            for (Map.Entry<String, Future<String>> result : pending.entrySet()) {
+                try {
+                    VERDICTS.put(result.getKey(), result.getValue().get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while verifying JARs");
+                } catch (ExecutionException e) {
+                    throw new IOException("Could not verify a JAR: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            saveVerdicts();
+            System.out.println("Verified " + pending.size() + " JARs in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+
+        List<String> rejected = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            String[] verdict = VERDICTS.get(hashes.get(i)).split("\\|", 2);
+            if (!Verdict.TRUSTED.name().equals(verdict[0])) {
+                rejected.add(paths.get(i).getFileName() + " (" + verdict[0].toLowerCase(Locale.ROOT).replace('_', ' ')
+                        + (verdict.length > 1 && !verdict[1].isEmpty() ? ", " + verdict[1] : "") + ")");
+            }
+        }
+        if (rejected.isEmpty()) {
+            return true;
+        }
+        if (MODE == Mode.ENFORCE) {
+            throw new SecurityException("Not launching, these JARs are not signed by a trusted certificate: "
+                    + String.join(", ", rejected));
+        }
+        System.err.println("Warning, these JARs are not signed by a trusted certificate: " + String.join(", ", rejected));
+        return false;
+    }
+
+    // "VERDICT|signer", the signer being the subject of the certificate that signed the JAR (if any)
+    static String check(Path jar, Set<TrustAnchor> anchors) throws IOException {
+        Map<CodeSigner, Boolean> signerTrusted = new HashMap<>();
+        String signer = "";
+        boolean signed = false;
+        boolean unsigned = false;
+        byte[] buffer = new byte[8192];
+        try (JarFile file = new JarFile(jar.toFile(), true)) {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || isSignatureFile(entry.getName())) {
+                    continue;
+                }
+                // The signers of an entry are only known once it was read to the end, a mismatch throws
+                try (InputStream in = file.getInputStream(entry)) {
+                    while (in.read(buffer) != -1) {
+                        // Just reading
+                    }
+                }
+                CodeSigner[] signers = entry.getCodeSigners();
+                if (signers == null) {
+                    unsigned = true;
+                    continue;
+                }
+                signed = true;
+                boolean trusted = false;
+                for (CodeSigner codeSigner : signers) {
+                    if (signer.isEmpty()) {
+                        signer = subjectOf(codeSigner);
+                    }
+                    if (signerTrusted.computeIfAbsent(codeSigner, s -> chainsToTruststore(s, anchors))) {
+                        trusted = true;
+                        signer = subjectOf(codeSigner);
+                        break;
+                    }
+                }
+                if (!trusted) {
+                    return Verdict.UNTRUSTED + "|" + signer;
+                }
+            }
+        } catch (SecurityException e) {
+            return Verdict.TAMPERED + "|" + e.getMessage();
+        }
+        if (!signed) {
+            return Verdict.UNSIGNED + "|";
+        }
+        return (unsigned ? Verdict.PARTIALLY_SIGNED : Verdict.TRUSTED) + "|" + signer;
+    }
+
+    // The manifest and the signature block files themselves are not signed
+    private static boolean isSignatureFile(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        if (!upper.startsWith("META-INF/") || upper.indexOf('/', 9) >= 0) {
+            return false;
+        }
+        String file = upper.substring(9);
+        return file.equals("MANIFEST.MF") || file.equals("INDEX.LIST") || file.startsWith("SIG-")
+                || file.endsWith(".SF") || file.endsWith(".RSA") || file.endsWith(".DSA") || file.endsWith(".EC");
+    }
+
+    private static boolean chainsToTruststore(CodeSigner signer, Set<TrustAnchor> anchors) {
+        try {
+            PKIXParameters parameters = new PKIXParameters(anchors);
+            parameters.setRevocationEnabled(false);
+            if (signer.getTimestamp() != null) {
+                // A timestamped signature stays valid after the signing certificate expired
+                parameters.setDate(signer.getTimestamp().getTimestamp());
+            }
+            CertPathValidator.getInstance("PKIX").validate(signer.getSignerCertPath(), parameters);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String subjectOf(CodeSigner signer) {
+        List<? extends Certificate> chain = signer.getSignerCertPath().getCertificates();
+        if (chain.isEmpty() || !(chain.get(0) instanceof X509Certificate)) {
+            return "";
+        }
+        return ((X509Certificate) chain.get(0)).getSubjectX500Principal().getName().replace('|', '/');
+    }
+
+    private static synchronized Set<TrustAnchor> trustAnchors() {
+        return anchors;
+    }
+
+    private static void loadAnchors() throws IOException {
+        try {
+            KeyStore truststore = TrustStoreManager.loadTruststore();
+            Set<TrustAnchor> loaded = new HashSet<>();
+            List<String> fingerprints = new ArrayList<>();
+            for (String alias : Collections.list(truststore.aliases())) {
+                Certificate certificate = truststore.getCertificate(alias);
+                if (certificate instanceof X509Certificate) {
+                    loaded.add(new TrustAnchor((X509Certificate) certificate, null));
+                    fingerprints.add(DigestUtil.toHex(DigestUtil.newSha256().digest(certificate.getEncoded())));
+                }
+            }
+            Collections.sort(fingerprints);
+            anchors = loaded;
+            anchorsKey = DigestUtil.sha256Hex(String.join(",", fingerprints)).substring(0, 16);
+        } catch (Exception e) {
+            throw new IOException("Could not load the truststore: " + e.getMessage(), e);
+        }
+    }
+
+    private static synchronized void loadVerdicts() throws IOException {
+        if (anchorsKey != null) {
+            return;
+        }
+        loadAnchors();
+        Path file = CacheLayout.verdictsFile();
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            // Verdicts checked against other trust anchors say nothing about the current ones
+            if (lines.size() < 2 || !lines.get(0).equals("format|" + FORMAT) || !lines.get(1).equals("anchors|" + anchorsKey)) {
+                System.out.println("Truststore changed, JAR signatures will be verified again");
+                return;
+            }
+            for (String line : lines.subList(2, lines.size())) {
+                String[] parts = line.split("\\|", 2);
+                if (parts.length == 2) {
+                    VERDICTS.put(parts[0], parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            // Without verdicts the JARs are simply verified again
+            System.err.println("Could not read JAR verdicts " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static synchronized void saveVerdicts() {
+        Path file = CacheLayout.verdictsFile();
+        List<String> lines = new ArrayList<>();
+        lines.add("format|" + FORMAT);
+        lines.add("anchors|" + anchorsKey);
+        for (Map.Entry<String, String> verdict : new TreeMap<>(VERDICTS).entrySet()) {
+            lines.add(verdict.getKey() + "|" + verdict.getValue());
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save JAR verdicts " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static Mode parseMode(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "off":
+                return Mode.OFF;
+            case "enforce":
+                return Mode.ENFORCE;
+            case "warn":
+                return Mode.WARN;
+            default:
+                System.err.println("Unknown jnlp.verify=" + value + ", using warn");
+                return Mode.WARN;
+        }
+    }
+}
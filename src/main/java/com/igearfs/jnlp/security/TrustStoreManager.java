@@ -10,13 +10,17 @@
 package com.igearfs.jnlp.security;
 
 import com.igearfs.jnlp.model.LaunchEntry; // Import LaunchEntry class
+import com.igearfs.jnlp.net.LauncherHttpClient;
+
 import javax.net.ssl.*;
 import java.io.*;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Optional;
 
 public class TrustStoreManager {
 
@@ -27,34 +31,24 @@ public class TrustStoreManager {
 
     // Method to download the server's SSL certificate without SSL validation
     public static X509Certificate downloadCertificate(String jnlpUrl) throws Exception {
-        URL url = new URL(jnlpUrl);
-        System.out.println("URL made");
-
-        // Use a custom TrustManager that doesn't perform any certificate verification
-        TrustManager[] trustAllCertificates = new TrustManager[] {
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return null;  // Trust any certificate
-                    }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                    }
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                    }
-                }
-        };
-
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, trustAllCertificates, new java.security.SecureRandom());
-        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+        // Accepts any certificate, but only for this one request, nothing global is changed
+        HttpClient client = LauncherHttpClient.trustAllClient();
+        HttpRequest request = LauncherHttpClient.request(jnlpUrl)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
 
         // Open connection
-        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-        connection.connect();
+        HttpResponse<InputStream> response = LauncherHttpClient.send(client, request);
+        LauncherHttpClient.discard(response);
         System.out.println("Connection established");
 
         // Get the server certificates
-        Certificate[] certificates = connection.getServerCertificates();
-        System.out.println("Certificates received: " + certificates);
+        Optional<SSLSession> session = response.sslSession();
+        if (session.isEmpty()) {
+            throw new Exception("Not an HTTPS URL: " + jnlpUrl);
+        }
+        Certificate[] certificates = session.get().getPeerCertificates();
+        System.out.println("Certificates received: " + certificates.length);
 
         // Get the first certificate in the chain (the server's certificate)
         if (certificates.length > 0) {
@@ -72,8 +66,13 @@ public class TrustStoreManager {
         }
     }
 
+    // Whether the JRE truststore (cacerts) already holds the certificate, under any alias
+    public static boolean isTrusted(X509Certificate cert) throws Exception {
+        return loadTruststore().getCertificateAlias(cert) != null;
+    }
+
     // Method to run keytool to add the certificate to the JRE truststore (cacerts)
-    public static void addCertificateToTruststoreWithKeyTool(String certFilePath) throws Exception {
+    public static boolean addCertificateToTruststoreWithKeyTool(String certFilePath) throws Exception {
         // Run the keytool command to import the certificate
         ProcessBuilder processBuilder = new ProcessBuilder(
                 "keytool",
@@ -87,73 +86,72 @@ public class TrustStoreManager {
 
         processBuilder.inheritIO();  // Allow the process to print output to the console
         Process process = processBuilder.start();
-        process.waitFor();
+        if (process.waitFor() != 0) {
+            System.err.println("keytool could not import the certificate.");
+            return false;
+        }
         System.out.println("Certificate successfully imported using keytool.");
+        return true;
     }
 
-    // Method to set the default SSL context using the updated truststore
-    public static void setDefaultSSLContext() throws Exception {
+    // The JRE truststore (cacerts), including the certificates imported by trustUrl
+    public static KeyStore loadTruststore() throws Exception {
         KeyStore truststore = KeyStore.getInstance(KeyStore.getDefaultType());
         try (FileInputStream truststoreInputStream = new FileInputStream(TRUSTSTORE_PATH)) {
             truststore.load(truststoreInputStream, TRUSTSTORE_PASSWORD.toCharArray());
         }
+        return truststore;
+    }
 
+    // Trust managers backed by the JRE truststore (cacerts)
+    public static TrustManager[] loadTrustManagers() throws Exception {
         TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(truststore);
+        tmf.init(loadTruststore());
+        return tmf.getTrustManagers();
+    }
 
+    // Method to set the default SSL context using the updated truststore
+    public static void setDefaultSSLContext() throws Exception {
         SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, tmf.getTrustManagers(), new java.security.SecureRandom());
+        sslContext.init(null, loadTrustManagers(), new java.security.SecureRandom());
 
         SSLContext.setDefault(sslContext);
+        // The pooled HTTP clients captured the previous context
+        LauncherHttpClient.reset();
         System.out.println("SSL context set to use updated truststore.");
     }
 
-    // Dynamic method to validate domain based on the ignoreDomainValidation flag
-    public static void setCustomHostnameVerifier(LaunchEntry entry)
-    {
-        // Only disable domain validation if the user chose to ignore it
-        if (entry.isIgnoreDomainValidation()) {
-            System.out.println("Domain validation disabled for: " + entry.getUrl());
-            // Disable domain validation by accepting any hostname
-            HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> true);
-        } else {
-            System.out.println("Domain validation enabled for: " + entry.getUrl());
-            // Validate that the hostname matches the URL's host
-            HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> {
-                try {
-                    return hostname.equals(new URL(entry.getUrl()).getHost());
-                } catch (MalformedURLException e) {
-                    throw new RuntimeException("Invalid URL format: " + entry.getUrl(), e);
-                }
-            });
-        }
-    }
-
     // Method to trust a URL (downloads the certificate, adds it to the default truststore)
     public static void trustUrl(LaunchEntry entry) {
         try {
-            // Step 1: Set hostname verification based on the LaunchEntry ignoreDomainValidation field
-            setCustomHostnameVerifier(entry);
+            // Step 1: Hostname verification follows the LaunchEntry ignoreDomainValidation field, see LauncherHttpClient.client(entry)
 
             // Step 2: Download the server certificate from the given URL without SSL validation
             X509Certificate cert = downloadCertificate(entry.getUrl());
             System.out.println("Cert Downloaded");
 
-            // Step 3: Save the downloaded certificate to a file
-            String certFilePath = "server-cert.cer";
-            saveCertificateToFile(cert, certFilePath);
-
-            // Step 4: Add the certificate to the JRE truststore using keytool
-            addCertificateToTruststoreWithKeyTool(certFilePath);
-
-            // Step 5: Update the default SSL context to use the updated truststore
-            setDefaultSSLContext();
-            System.out.println("Server certificate trusted successfully and SSL context updated.");
+            if (isTrusted(cert)) {
+                // Nothing changed, the pooled clients and their connections stay as they are
+                System.out.println("Server certificate is already trusted.");
+            } else {
+                // Step 3: Save the downloaded certificate to a file
+                String certFilePath = "server-cert.cer";
+                saveCertificateToFile(cert, certFilePath);
+
+                // Step 4: Add the certificate to the JRE truststore using keytool
+                // Step 5: Update the default SSL context to use the updated truststore
+                if (addCertificateToTruststoreWithKeyTool(certFilePath)) {
+                    setDefaultSSLContext();
+                    System.out.println("Server certificate trusted successfully and SSL context updated.");
+                }
+            }
 
             // Step 6: Make a secure connection to the server again to prove it works
-            URL url = new URL(entry.getUrl());
-            HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-            connection.connect();  // Attempt to connect again using the updated truststore
+            // (this also warms up the pooled connection the JNLP and JAR fetches reuse)
+            HttpRequest request = LauncherHttpClient.request(entry.getUrl())
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            LauncherHttpClient.discard(LauncherHttpClient.send(LauncherHttpClient.client(entry), request));
             System.out.println("Successfully connected to the server: " + entry.getUrl());
 
         } catch (SSLHandshakeException e) {
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.util;
+
+import com.igearfs.jnlp.model.JarResource;
+import com.igearfs.jnlp.model.JnlpDescriptor;
+import com.igearfs.jnlp.model.JvmProfile;
+import com.igearfs.jnlp.model.PackageResource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single pass StAX parser for JNLP files. No DOM is built: every element is turned into
+ * its model object the moment the reader passes it.
+ *
+ * Descriptors are parsed for the platform the launcher runs on: a {@code <resources>} element whose
+ * os or arch attribute does not match it is skipped with everything in it, so other platforms'
+ * JARs and native libraries are never downloaded.
+ */
+public class JnlpParser {
+
+    private static final String OS_NAME = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+    private static final String OS_ARCH = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+    // Names descriptors use for the architecture that os.arch reports differently
+    private static final List<String> ARCH_ALIASES = archAliases(OS_ARCH);
+
+    // A release number like 4.5.2, how servers state their version in a title
+    private static final Pattern RELEASE = Pattern.compile("\\b\\d+(\\.\\d+)+\\b");
+
+    // Configured once, creating readers from a configured factory is thread safe
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // A descriptor has no business pulling in DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    public static JnlpDescriptor parse(String url, byte[] content, String sha256) throws IOException {
+        String base = url;
+        String title = null;
+        String mainClass = null;
+        List<String> arguments = new ArrayList<>();
+        List<JarResource> jars = new ArrayList<>();
+        List<PackageResource> packages = new ArrayList<>();
+        List<String> extensions = new ArrayList<>();
+        JvmProfile jvmProfile = null;
+        String serverVersion = null;
+        int skipped = 0; // Depth of <resources> elements for another platform the reader is in
+
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && skipped > 0 && reader.getLocalName().equals("resources")) {
+                    skipped--;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (reader.getLocalName().equals("resources")
+                        && (skipped > 0 || !matchesPlatform(attribute(reader, "os"), attribute(reader, "arch")))) {
+                    skipped++;
+                }
+                if (skipped > 0) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                    case "jnlp":
+                        // Relative hrefs resolve against the codebase, or the descriptor itself without one
+                        String codebase = attribute(reader, "codebase");
+                        if (!codebase.isEmpty()) {
+                            base = resolveHref(url, codebase);
+                            base = base.endsWith("/") ? base : base + "/";
+                        }
+                        // Mirth stamps its descriptors with the server release, <jnlp version="4.5.2">
+                        String version = attribute(reader, "version");
+                        if (!version.isEmpty()) {
+                            serverVersion = version;
+                        }
+                        break;
+                    case "title":
+                        if (title == null) {
+                            title = reader.getElementText().trim();
+                        }
+                        break;
+                    case "application-desc":
+                        if (mainClass == null) {
+                            mainClass = attribute(reader, "main-class");
+                        }
+                        break;
+                    case "java":
+                    case "j2se":
+                        // Alternatives are listed in order of preference, the first one is the one we run
+                        if (jvmProfile == null) {
+                            jvmProfile = new JvmProfile(attribute(reader, "initial-heap-size"),
+                                    attribute(reader, "max-heap-size"), null, null, attribute(reader, "java-vm-args"));
+                        }
+                        break;
+                    case "argument":
+                        arguments.add(reader.getElementText());
+                        break;
+                    case "jar":
+                        // Servers like Mirth declare the content hash, which lets the content store skip the fetch.
+                        // A version attribute enables the version-based download protocol (and JARDiff updates)
+                        jars.add(new JarResource(resolveHref(base, attribute(reader, "href")),
+                                DigestUtil.normalizeSha256(attribute(reader, "sha256")), attribute(reader, "version"),
+                                "lazy".equals(attribute(reader, "download")), attribute(reader, "part")));
+                        break;
+                    case "nativelib":
+                        // Native libraries have to be on disk before the first class that loads one,
+                        // so they are fetched at startup even when declared lazy
+                        jars.add(new JarResource(resolveHref(base, attribute(reader, "href")),
+                                DigestUtil.normalizeSha256(attribute(reader, "sha256")), attribute(reader, "version"),
+                                false, attribute(reader, "part"), true));
+                        break;
+                    case "package":
+                        // <package name="com.example.*" part="reports" recursive="true"/>
+                        packages.add(new PackageResource(attribute(reader, "name"), attribute(reader, "part"),
+                                "true".equals(attribute(reader, "recursive"))));
+                        break;
+                    case "extension":
+                        String href = attribute(reader, "href");
+                        if (!href.isEmpty()) {
+                            extensions.add(resolveHref(base, href));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid JNLP " + url + ": " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Reading from memory, nothing to release
+                }
+            }
+        }
+        if (serverVersion == null && title != null) {
+            // "Mirth Connect Administrator 4.5.2"
+            Matcher release = RELEASE.matcher(title);
+            if (release.find()) {
+                serverVersion = release.group();
+            }
+        }
+        return new JnlpDescriptor(url, sha256, title, mainClass == null || mainClass.isEmpty() ? null : mainClass,
+                arguments, jars, packages, extensions, jvmProfile, serverVersion);
+    }
+
+    // The platform descriptors are parsed for, part of the key of everything cached from a parse
+    public static String platform() {
+        return OS_NAME + "/" + OS_ARCH;
+    }
+
+    /**
+     * Whether a {@code <resources>} element with these os and arch attributes applies to this platform.
+     * Each attribute is a list of values separated by spaces (a space inside a value is escaped as
+     * "\ "). An os value matches when it is a prefix of os.name, like Java Web Start did ("Windows"
+     * for "Windows 11"). An arch value has to be os.arch itself or another common name of this
+     * architecture (x86_64 for amd64, ...): as a prefix "x86" would match x86_64. An empty attribute
+     * matches every platform.
+     */
+    static boolean matchesPlatform(String os, String arch) {
+        return matches(os, OS_NAME, true, List.of()) && matches(arch, OS_ARCH, false, ARCH_ALIASES);
+    }
+
+    private static boolean matches(String attribute, String name, boolean prefix, List<String> aliases) {
+        List<String> values = values(attribute);
+        if (values.isEmpty()) {
+            return true;
+        }
+        for (String value : values) {
+            String lowerValue = value.toLowerCase(Locale.ROOT);
+            if ((prefix ? name.startsWith(lowerValue) : name.equals(lowerValue)) || aliases.contains(lowerValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> values(String attribute) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < attribute.length(); i++) {
+            char c = attribute.charAt(i);
+            if (c == '\\' && i + 1 < attribute.length()) {
+                value.append(attribute.charAt(++i));
+            } else if (Character.isWhitespace(c)) {
+                if (value.length() > 0) {
+                    values.add(value.toString());
+                    value.setLength(0);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        if (value.length() > 0) {
+            values.add(value.toString());
+        }
+        return values;
+    }
+
+    // Other names JNLP files use for this architecture
+    private static List<String> archAliases(String arch) {
+        switch (arch) {
+            case "amd64":
+            case "x86_64":
+                return List.of("amd64", "x86_64", "x64");
+            case "x86":
+            case "i386":
+            case "i486":
+            case "i586":
+            case "i686":
+                return List.of("x86", "i386", "i686");
+            case "aarch64":
+            case "arm64":
+                return List.of("aarch64", "arm64");
+            default:
+                return List.of();
+        }
+    }
+
+    // Missing attributes read as "" like they did with the DOM parser
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value.trim();
+    }
+
+    private static String resolveHref(String base, String href) {
+        try {
+            return URI.create(base).resolve(href).toString();
+        } catch (IllegalArgumentException e) {
+            // Not a valid URI reference (unescaped spaces, ...), join it the way the launcher always did
+            return href.startsWith("http") ? href : base.substring(0, base.lastIndexOf('/') + 1) + href;
+        }
+    }
+}
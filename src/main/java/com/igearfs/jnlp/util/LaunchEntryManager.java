@@ -9,7 +9,13 @@
 
 package com.igearfs.jnlp.util;
 
+import com.igearfs.jnlp.PrefetchScheduler;
+import com.igearfs.jnlp.cache.CacheEvictor;
+import com.igearfs.jnlp.download.JarDownloader;
+import com.igearfs.jnlp.launch.LibrarySets;
+import com.igearfs.jnlp.model.JvmProfile;
 import com.igearfs.jnlp.model.LaunchEntry;
+import com.igearfs.jnlp.model.LaunchMode;
 
 import java.io.*;
 import java.util.*;
@@ -34,6 +40,8 @@ public class LaunchEntryManager {
 
                     boolean ignoreDomainValidation = true; // Default to true for older entries
                     String iconPath = "/icons/rocket.png"; // Default icon path
+                    JvmProfile jvmProfile = JvmProfile.EMPTY; // Default to the JVM settings of the JNLP
+                    LaunchMode launchMode = LaunchMode.SEPARATE_JVM; // Default to a JVM of its own
 
                     if (parts.length == 3) { // Old format (name, url, note)
                         parts = new String[]{parts[0], parts[1], parts[2], UUID.randomUUID().toString(), "true", iconPath};
@@ -48,14 +56,25 @@ public class LaunchEntryManager {
                         ignoreDomainValidation = Boolean.parseBoolean(parts[4]);
                         parts = new String[]{parts[0], parts[1], parts[2], parts[3], String.valueOf(ignoreDomainValidation), iconPath};
                         newSaves = true;
-                    } else if (parts.length == 6) { // New format with all information
+                    } else if (parts.length == 6) { // Entries without JVM settings
                         ignoreDomainValidation = Boolean.parseBoolean(parts[4]);
                         iconPath = parts[5];
                         newSaves = true;
+                    } else if (parts.length == 7) { // Entries without launch mode
+                        ignoreDomainValidation = Boolean.parseBoolean(parts[4]);
+                        iconPath = parts[5];
+                        jvmProfile = JvmProfile.decode(parts[6]);
+                        newSaves = true;
+                    } else if (parts.length == 8) { // New format with all information
+                        ignoreDomainValidation = Boolean.parseBoolean(parts[4]);
+                        iconPath = parts[5];
+                        jvmProfile = JvmProfile.decode(parts[6]);
+                        launchMode = LaunchMode.fromCode(parts[7]);
                     }
 
                     // Add the entry to the list
-                    entries.add(new LaunchEntry(parts[0], parts[1], parts[2], parts[3], ignoreDomainValidation, iconPath));
+                    entries.add(new LaunchEntry(parts[0], parts[1], parts[2], parts[3], ignoreDomainValidation, iconPath, jvmProfile,
+                            launchMode));
                 }
 
                 if (newSaves) {
@@ -63,6 +82,9 @@ public class LaunchEntryManager {
                 }
 
                 System.out.println("Entries loaded from " + USER_DATA_DIR + "/" + DATA_FILE);
+                retainCachedDomains(entries);
+                LibrarySets.retainEntries(entryIds(entries));
+                PrefetchScheduler.schedule(entries);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -78,10 +100,14 @@ public class LaunchEntryManager {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(USER_DATA_DIR + "/" + DATA_FILE))) {
             for (LaunchEntry entry : entries) {
                 writer.write(entry.getName() + "|" + entry.getUrl() + "|" + entry.getNote() + "|" +
-                        entry.getId() + "|" + entry.isIgnoreDomainValidation() + "|" + entry.getIconPath());
+                        entry.getId() + "|" + entry.isIgnoreDomainValidation() + "|" + entry.getIconPath() + "|" +
+                        entry.getJvmProfile().encode() + "|" + entry.getLaunchMode().getCode());
                 writer.newLine();
             }
             System.out.println("Entries saved to " + USER_DATA_DIR + "/" + DATA_FILE);
+            retainCachedDomains(entries);
+            LibrarySets.retainEntries(entryIds(entries));
+            PrefetchScheduler.schedule(entries);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -89,4 +115,26 @@ public class LaunchEntryManager {
         // Sort the entries by name (case insensitive)
         entries.sort(Comparator.comparing(LaunchEntry::getName, String::compareToIgnoreCase));
     }
+
+    // Cached JARs of servers no entry points at any more are evicted, see CacheEvictor
+    private static void retainCachedDomains(List<LaunchEntry> entries) {
+        Set<String> domains = new HashSet<>();
+        for (LaunchEntry entry : entries) {
+            try {
+                domains.add(JarDownloader.getDomainFromUrl(entry.getUrl()));
+            } catch (RuntimeException e) {
+                // Not a URL, it never had a cache folder
+            }
+        }
+        CacheEvictor.retainDomains(domains);
+    }
+
+    // Client library sets that only deleted entries used are pruned, see LibrarySets
+    private static List<String> entryIds(List<LaunchEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (LaunchEntry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
 }
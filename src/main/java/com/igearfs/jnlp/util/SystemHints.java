@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Best-effort hints about the machine the launcher runs on, for background work that should stay out
+ * of the way. Java has no API for any of them, so they come from the operating system's own tools;
+ * a hint that cannot be determined reads as "no" (mains power, unmetered network, unknown load).
+ *
+ * Those tools are slow to start (PowerShell takes a second or more), so the power and network hints
+ * are remembered for -Djnlp.hints.cacheMinutes (default 5).
+ */
+public class SystemHints {
+
+    private static final String OS_NAME = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+    private static final long COMMAND_TIMEOUT_SECONDS = 10;
+    private static final long CACHE_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("jnlp.hints.cacheMinutes", 5));
+
+    // Last answers and when they were determined, a race only probes twice
+    private static volatile boolean onBattery;
+    private static volatile long onBatteryAt;
+    private static volatile boolean metered;
+    private static volatile long meteredAt;
+
+    // Windows 8 and later know which connections cost money, PowerShell reaches the WinRT API
+    private static final String WINDOWS_COST_TYPE =
+            "[Windows.Networking.Connectivity.NetworkInformation,Windows.Networking.Connectivity,ContentType=WindowsRuntime] > $null; "
+                    + "$profile = [Windows.Networking.Connectivity.NetworkInformation]::GetInternetConnectionProfile(); "
+                    + "if ($profile) { $profile.GetConnectionCost().NetworkCostType }";
+
+    /**
+     * Whether the machine runs on battery.
+     */
+    public static boolean isOnBattery() {
+        long now = System.currentTimeMillis();
+        if (onBatteryAt == 0 || now - onBatteryAt >= CACHE_MILLIS) {
+            onBattery = probeBattery();
+            onBatteryAt = now;
+        }
+        return onBattery;
+    }
+
+    private static boolean probeBattery() {
+        if (OS_NAME.contains("win")) {
+            // BatteryStatus 1 is "discharging", machines without a battery print nothing
+            return run("powershell", "-NoProfile", "-NonInteractive", "-Command",
+                    "(Get-CimInstance Win32_Battery).BatteryStatus").trim().equals("1");
+        }
+        if (OS_NAME.contains("mac")) {
+            return run("pmset", "-g", "batt").contains("'Battery Power'");
+        }
+        try (DirectoryStream<Path> supplies = Files.newDirectoryStream(Paths.get("/sys/class/power_supply"))) {
+            for (Path supply : supplies) {
+                Path status = supply.resolve("status");
+                if (Files.isReadable(status) && Files.readString(status).trim().equals("Discharging")) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            // No power supply information
+        }
+        return false;
+    }
+
+    /**
+     * Whether the network connection is metered (mobile data, a hotspot, a connection marked as metered).
+     */
+    public static boolean isMetered() {
+        long now = System.currentTimeMillis();
+        if (meteredAt == 0 || now - meteredAt >= CACHE_MILLIS) {
+            metered = probeMetered();
+            meteredAt = now;
+        }
+        return metered;
+    }
+
+    private static boolean probeMetered() {
+        if (OS_NAME.contains("win")) {
+            String costType = run("powershell", "-NoProfile", "-NonInteractive", "-Command", WINDOWS_COST_TYPE).trim();
+            return costType.equals("Fixed") || costType.equals("Variable");
+        }
+        if (OS_NAME.contains("linux")) {
+            // NetworkManager: GENERAL.METERED:yes, or "yes (guessed)" for a phone's hotspot
+            for (String line : run("nmcli", "-t", "-f", "GENERAL.METERED", "device", "show").split("\n")) {
+                if (line.startsWith("GENERAL.METERED:yes")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Load of the whole machine from 0 to 1, or a negative value when it is not known.
+     */
+    public static double cpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getCpuLoad();
+        }
+        double loadAverage = os.getSystemLoadAverage();
+        return loadAverage < 0 ? -1 : loadAverage / os.getAvailableProcessors();
+    }
+
+    // Output of a command, empty when it is missing, fails or hangs
+    private static String run(String... command) {
+        Path output = null;
+        try {
+            // A file instead of a pipe: reading a pipe would wait for a hung command forever
+            output = Files.createTempFile("jnlp-hint", ".out");
+            Process process = new ProcessBuilder(List.of(command)).redirectErrorStream(true)
+                    .redirectOutput(output.toFile()).start();
+            process.getOutputStream().close();
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                System.err.println(command[0] + " did not answer within " + COMMAND_TIMEOUT_SECONDS + " seconds, stopped it");
+                return "";
+            }
+            if (process.exitValue() != 0) {
+                return "";
+            }
+            try (InputStream in = Files.newInputStream(output)) {
+                return new String(in.readNBytes(64 * 1024), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } finally {
+            deleteQuietly(output);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Left to the temp folder's own cleanup
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2025. All rights reserved.
+ * This software is protected under the intellectual property laws of the United States and international copyright treaties.
+ * Unauthorized copying, modification, distribution, or reverse engineering of this software is strictly prohibited.
+ * By using this software, you agree to comply with the terms and conditions outlined in the license agreement provided with the product.
+ * Any use of the software outside the bounds of this agreement is subject to legal action.
+ *
+ */
+
+package com.igearfs.jnlp.download;
+
+import com.igearfs.jnlp.util.DigestUtil;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Compares the old 4 KB stream copy with ChannelTransfer on a large local file.
+ *
+ * It lives in the test sources so it is not shipped in the launcher JAR. After mvn test-compile:
+ * java -cp target/classes:target/test-classes com.igearfs.jnlp.download.TransferBenchmark [sizeMb] [rounds]
+ */
+public class TransferBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path source = Files.createTempFile("transfer-bench-src", ".bin");
+        Path target = Files.createTempFile("transfer-bench-dst", ".bin");
+        try {
+            writeRandomFile(source, sizeMb);
+            System.out.println("Copying " + sizeMb + " MB, " + rounds + " rounds (first round is warm-up)");
+            System.out.println(String.format("%-6s %20s %20s %20s", "round", "stream+rehash MB/s", "stream inline MB/s", "nio inline MB/s"));
+
+            for (int round = 0; round <= rounds; round++) {
+                double rehash = throughput(sizeMb, streamCopyThenHash(source, target));
+                double inline = throughput(sizeMb, streamCopyInlineHash(source, target));
+                double nio = throughput(sizeMb, channelCopy(source, target, false));
+                double nioStream = throughput(sizeMb, channelCopy(source, target, true));
+                System.out.println(String.format("%-6s %20.1f %20.1f %13.1f (%.1f)", round == 0 ? "warm" : String.valueOf(round),
+                        rehash, inline, nio, nioStream));
+            }
+            System.out.println("nio inline: file channel source, in parentheses: stream source as used for HTTP bodies");
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    // The original downloadJar loop followed by a second pass to hash the file
+    private static long streamCopyThenHash(Path source, Path target) throws Exception {
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        }
+        DigestUtil.sha256Hex(target);
+        return System.nanoTime() - start;
+    }
+
+    // The original loop with the digest updated per 4 KB chunk
+    private static long streamCopyInlineHash(Path source, Path target) throws Exception {
+        long start = System.nanoTime();
+        MessageDigest digest = DigestUtil.newSha256();
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+                digest.update(buffer, 0, len);
+            }
+        }
+        digest.digest();
+        return System.nanoTime() - start;
+    }
+
+    private static long channelCopy(Path source, Path target, boolean streamSource) throws Exception {
+        long start = System.nanoTime();
+        MessageDigest digest = DigestUtil.newSha256();
+        try (ReadableByteChannel in = streamSource
+                ? Channels.newChannel(Files.newInputStream(source))
+                : FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelTransfer.copy(in, out, digest, bytes -> { });
+        }
+        digest.digest();
+        return System.nanoTime() - start;
+    }
+
+    private static void writeRandomFile(Path file, int sizeMb) throws Exception {
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < sizeMb; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+    }
+
+    private static double throughput(int sizeMb, long nanos) {
+        return sizeMb / (nanos / 1_000_000_000.0);
+    }
+}